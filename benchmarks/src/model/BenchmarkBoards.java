@@ -0,0 +1,169 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Builds the boards the benchmarks run on.
+ *
+ * The boards are built from seeded random cells through the package-private
+ * GameCore hooks and handed to a Board with the save format, so every run
+ * of a benchmark starts from the same position.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class BenchmarkBoards {
+
+    /**
+     * The seed of the cells and pieces.
+     */
+    private static final long SEED = 305L;
+
+    /**
+     * The rows kept empty at the top of a filled board so a new piece
+     * can enter and move.
+     */
+    private static final int SPAWN_ROWS = 5;
+
+    /**
+     * The rows of a line clearing board below its well.
+     */
+    private static final int WELL_ROWS = 4;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BenchmarkBoards() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Parses the width of a board size parameter such as "10x20".
+     *
+     * @param theSize the board size.
+     * @return the width.
+     */
+    public static int width(final String theSize) {
+        return Integer.parseInt(theSize.substring(0, theSize.indexOf('x')));
+    }
+
+    /**
+     * Parses the height of a board size parameter such as "10x20".
+     *
+     * @param theSize the board size.
+     * @return the height.
+     */
+    public static int height(final String theSize) {
+        return Integer.parseInt(theSize.substring(theSize.indexOf('x') + 1));
+    }
+
+    /**
+     * Creates a board whose bottom rows hold random frozen blocks. Every
+     * filled row has at least one empty cell, so no row is complete.
+     *
+     * @param theSize the board size, such as "10x20".
+     * @param theFill the fraction of the rows to fill, below the rows kept
+     *        free for the current piece.
+     * @return the board, with a current piece at the top.
+     */
+    public static Board filled(final String theSize, final double theFill) {
+        final int width = width(theSize);
+        final int height = height(theSize);
+        final GameCore core = newCore(width, height);
+        final SplitMix random = new SplitMix(SEED);
+        final long fullRow = -1L >>> (Long.SIZE - width);
+        final long[] masks = new long[height];
+        final byte[] colors = new byte[width * height];
+        final int rows = Math.min((int) Math.round(theFill * height), height - SPAWN_ROWS);
+        for (int y = 0; y < rows; y++) {
+            masks[y] = random.nextLong() & fullRow & ~(1L << random.nextInt(width));
+            for (int x = 0; x < width; x++) {
+                if ((masks[y] & 1L << x) != 0L) {
+                    colors[y * width + x] =
+                        (byte) (random.nextInt(TetrisPiece.values().length) + 1);
+                }
+            }
+        }
+        core.loadCells(masks, colors);
+        return toBoard(core);
+    }
+
+    /**
+     * Creates a board where dropping the current piece clears a given
+     * number of rows: a vertical I piece hangs over a four row deep well
+     * in the leftmost column, and only the lowest rows beside the well are
+     * otherwise complete.
+     *
+     * @param theSize the board size, such as "10x20".
+     * @param theLines the number of rows the drop clears, from 0 to 4.
+     * @return the board.
+     */
+    public static Board lineClear(final String theSize, final int theLines) {
+        final int width = width(theSize);
+        final int height = height(theSize);
+        final GameCore core = newCore(width, height);
+        final long fullRow = -1L >>> (Long.SIZE - width);
+        final long[] masks = new long[height];
+        final byte[] colors = new byte[width * height];
+        for (int y = 0; y < WELL_ROWS; y++) {
+            masks[y] = fullRow & ~1L;
+            if (y >= theLines) {
+                masks[y] &= ~(1L << (width - 1));
+            }
+            for (int x = 0; x < width; x++) {
+                if ((masks[y] & 1L << x) != 0L) {
+                    colors[y * width + x] = (byte) TetrisPiece.O.getPaletteIndex();
+                }
+            }
+        }
+        core.loadCells(masks, colors);
+        final Rotation vertical = Rotation.QUARTER;
+        final PieceShape shape = PieceShape.of(TetrisPiece.I, vertical);
+        final MovableTetrisPiece piece =
+            new MovableTetrisPiece(TetrisPiece.I,
+                                   new Point(-shape.getMinX(), height - 1 - shape.getMaxY()),
+                                   vertical);
+        core.loadPieces(piece, core.getNextPiece(), core.getPieceGenerator(), null);
+        return toBoard(core);
+    }
+
+    /**
+     * Creates a started game with seeded pieces.
+     *
+     * @param theWidth the width of the board.
+     * @param theHeight the height of the board.
+     * @return the game.
+     */
+    private static GameCore newCore(final int theWidth, final int theHeight) {
+        final GameCore result = new GameCore(theWidth, theHeight);
+        result.setPieceGenerator(new BagPieceGenerator(SEED));
+        result.newGame();
+        return result;
+    }
+
+    /**
+     * Copies a game into a new Board.
+     *
+     * @param theCore the game.
+     * @return the board.
+     */
+    private static Board toBoard(final GameCore theCore) {
+        final ByteBuffer buffer = ByteBuffer.allocate(SaveFormat.maxBytes(theCore));
+        SaveFormat.write(theCore, buffer);
+        buffer.flip();
+        final Board result = new Board(theCore.getWidth(), theCore.getHeight());
+        try {
+            result.load(buffer);
+        } catch (final StreamCorruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+}
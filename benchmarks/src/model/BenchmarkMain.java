@@ -0,0 +1,49 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the model benchmarks with the GC profiler, so every result is
+ * reported with its allocation rate and bytes allocated per operation.
+ *
+ * The usual JMH command line options may be given, for example a
+ * benchmark name pattern or "-p mySize=10x20" to run one board size.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class BenchmarkMain {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BenchmarkMain() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param theArgs JMH command line options.
+     * @throws RunnerException if a benchmark fails.
+     * @throws CommandLineOptionException if the options are not valid.
+     */
+    public static void main(final String[] theArgs)
+        throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                       .parent(new CommandLineOptions(theArgs))
+                       .addProfiler(GCProfiler.class)
+                       .build()).run();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the Board moves and queries a game performs every tick.
+ *
+ * Moves that leave the piece where it started are measured in pairs
+ * (left then right, clockwise then counterclockwise) so the board is the
+ * same at every invocation. Moves that freeze the piece restore the
+ * starting snapshot first; restore() is measured on its own so its cost
+ * can be subtracted.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    /**
+     * The board size.
+     */
+    @Param({"10x20", "20x40", "64x64"})
+    protected String mySize;
+
+    /**
+     * The fraction of the rows filled with random blocks.
+     */
+    @Param({"0.0", "0.25", "0.5", "0.75"})
+    protected double myFill;
+
+    /**
+     * The board being played.
+     */
+    private Board myBoard;
+
+    /**
+     * The starting position of the board.
+     */
+    private GameCore.Snapshot myStart;
+
+    /**
+     * Builds the board for the parameters.
+     */
+    @Setup
+    public void setUp() {
+        myBoard = BenchmarkBoards.filled(mySize, myFill);
+        myStart = myBoard.snapshot();
+    }
+
+    /**
+     * Moves the piece left and back.
+     */
+    @Benchmark
+    public void leftRight() {
+        myBoard.left();
+        myBoard.right();
+    }
+
+    /**
+     * Rotates the piece clockwise and back.
+     */
+    @Benchmark
+    public void rotateCWAndCCW() {
+        myBoard.rotateCW();
+        myBoard.rotateCCW();
+    }
+
+    /**
+     * Restores the starting position, the baseline of the other restoring
+     * benchmarks.
+     */
+    @Benchmark
+    public void restore() {
+        myBoard.restore(myStart);
+    }
+
+    /**
+     * Restores the starting position and moves the piece down one row.
+     */
+    @Benchmark
+    public void restoreAndDown() {
+        myBoard.restore(myStart);
+        myBoard.down();
+    }
+
+    /**
+     * Restores the starting position and drops the piece, freezing it.
+     */
+    @Benchmark
+    public void restoreAndDrop() {
+        myBoard.restore(myStart);
+        myBoard.drop();
+    }
+
+    /**
+     * Copies the whole board for an observer.
+     *
+     * @return the board data.
+     */
+    @Benchmark
+    public List<Color[]> boardData() {
+        return myBoard.getBoardData();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures freezing a piece that completes one to four rows, which runs
+ * the row check and removal. Each invocation restores the starting
+ * snapshot and drops a vertical I piece into a well; subtract the
+ * noClear baseline, which drops the same piece without completing a row,
+ * to isolate the cost of clearing.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClearRowsBenchmark {
+
+    /**
+     * The board size.
+     */
+    @Param({"10x20", "20x40", "64x64"})
+    protected String mySize;
+
+    /**
+     * The number of rows the drop clears.
+     */
+    @Param({"1", "2", "3", "4"})
+    protected int myLines;
+
+    /**
+     * The board that clears rows.
+     */
+    private Board myBoard;
+
+    /**
+     * The starting position of myBoard.
+     */
+    private GameCore.Snapshot myStart;
+
+    /**
+     * The board that clears no rows.
+     */
+    private Board myBaseline;
+
+    /**
+     * The starting position of myBaseline.
+     */
+    private GameCore.Snapshot myBaselineStart;
+
+    /**
+     * Builds the boards for the parameters.
+     */
+    @Setup
+    public void setUp() {
+        myBoard = BenchmarkBoards.lineClear(mySize, myLines);
+        myStart = myBoard.snapshot();
+        myBaseline = BenchmarkBoards.lineClear(mySize, 0);
+        myBaselineStart = myBaseline.snapshot();
+    }
+
+    /**
+     * Drops the piece and clears the rows.
+     */
+    @Benchmark
+    public void clear() {
+        myBoard.restore(myStart);
+        myBoard.drop();
+    }
+
+    /**
+     * Drops the piece into a well that completes no rows.
+     */
+    @Benchmark
+    public void noClear() {
+        myBaseline.restore(myBaselineStart);
+        myBaseline.drop();
+    }
+}
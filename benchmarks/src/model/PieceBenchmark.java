@@ -0,0 +1,89 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import model.wallkicks.WallKick;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the piece computations behind every move: the board points of
+ * a MovableTetrisPiece and the wall kick table lookup of a rotation.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceBenchmark {
+
+    /**
+     * The position of the piece, near the middle of a standard board.
+     */
+    private static final Point POSITION = new Point(4, 10);
+
+    /**
+     * The piece type.
+     */
+    @Param({"I", "O", "T"})
+    protected TetrisPiece myType;
+
+    /**
+     * The rotation of the piece.
+     */
+    @Param({"NONE", "QUARTER"})
+    protected Rotation myRotation;
+
+    /**
+     * The piece being measured.
+     */
+    private MovableTetrisPiece myPiece;
+
+    /**
+     * Builds the piece for the parameters.
+     */
+    @Setup
+    public void setUp() {
+        myPiece = new MovableTetrisPiece(myType, POSITION, myRotation);
+    }
+
+    /**
+     * Computes the board points of the piece.
+     *
+     * @return the points.
+     */
+    @Benchmark
+    public Point[] boardPoints() {
+        return myPiece.getBoardPoints();
+    }
+
+    /**
+     * Looks up the wall kicks of a clockwise rotation.
+     *
+     * @return the wall kick offsets.
+     */
+    @Benchmark
+    public Point[] wallKicks() {
+        return WallKick.getWallKicks(myType, myRotation, myRotation.clockwise());
+    }
+}
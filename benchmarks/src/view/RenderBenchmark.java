@@ -0,0 +1,140 @@
+/*
+ * TCSS 305
+ * Assignment 6 - Tetris
+ */
+
+package view;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import model.BenchmarkBoards;
+import model.Board;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures one frame of the game panels painted into an offscreen image
+ * under headless AWT, so the numbers do not depend on a display or the
+ * event dispatch thread. Run with the GC profiler for the bytes allocated
+ * per frame.
+ *
+ * @author Nina Chepovska
+ * @version May 23, 2015
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+    /** The board size the panels are laid out for. */
+    private static final String SIZE = "10x20";
+
+    /** The size in pixels of a board square. */
+    private static final int SQUARE_SIZE = 25;
+
+    /** The size in pixels of the preview panel. */
+    private static final int PREVIEW_SIZE = 150;
+
+    /** The fraction of the rows filled with random blocks. */
+    @Param({"0.0", "0.25", "0.5", "0.75"})
+    protected double myFill;
+
+    /** Whether the grid is painted. */
+    @Param({"false", "true"})
+    protected boolean myGrid;
+
+    /** Whether the game is over. */
+    @Param({"false", "true"})
+    protected boolean myGameOver;
+
+    /** The board panel. */
+    private VisualBoard myVisualBoard;
+
+    /** The preview panel. */
+    private PiecePreview myPreview;
+
+    /** The image the board panel is painted into. */
+    private BufferedImage myBoardImage;
+
+    /** The graphics of myBoardImage. */
+    private Graphics2D myBoardGraphics;
+
+    /** The image the preview panel is painted into. */
+    private BufferedImage myPreviewImage;
+
+    /** The graphics of myPreviewImage. */
+    private Graphics2D myPreviewGraphics;
+
+    /**
+     * Builds the panels and images for the parameters.
+     */
+    @Setup
+    public void setUp() {
+        final Board board = BenchmarkBoards.filled(SIZE, myFill);
+        final int width = board.getWidth() * SQUARE_SIZE;
+        final int height = board.getHeight() * SQUARE_SIZE;
+
+        myVisualBoard = new VisualBoard();
+        myVisualBoard.setSize(width, height);
+        myPreview = new PiecePreview();
+        myPreview.setSize(PREVIEW_SIZE, PREVIEW_SIZE);
+        myVisualBoard.setState(board.getState());
+        myPreview.setState(board.getState());
+        myVisualBoard.setGrid(myGrid);
+        myVisualBoard.setGameOver(myGameOver);
+        myPreview.setGameOver(myGameOver);
+
+        myBoardImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        myBoardGraphics = myBoardImage.createGraphics();
+        myPreviewImage = new BufferedImage(PREVIEW_SIZE, PREVIEW_SIZE,
+                                           BufferedImage.TYPE_INT_RGB);
+        myPreviewGraphics = myPreviewImage.createGraphics();
+    }
+
+    /**
+     * Releases the graphics of the images.
+     */
+    @TearDown
+    public void tearDown() {
+        myBoardGraphics.dispose();
+        myPreviewGraphics.dispose();
+    }
+
+    /**
+     * Paints one frame of the board panel.
+     *
+     * @return the image painted into.
+     */
+    @Benchmark
+    public BufferedImage paintBoard() {
+        myVisualBoard.paintComponent(myBoardGraphics);
+        return myBoardImage;
+    }
+
+    /**
+     * Paints one frame of the preview panel.
+     *
+     * @return the image painted into.
+     */
+    @Benchmark
+    public BufferedImage paintPreview() {
+        myPreview.paintComponent(myPreviewGraphics);
+        return myPreviewImage;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+/**
+ * A PieceGenerator that deals the seven pieces in "bags": each bag holds
+ * one of every TetrisPiece in random order, and a new bag is shuffled when
+ * the previous one is empty. This bounds the gap between two pieces of the
+ * same type, as in most modern versions of the game.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class BagPieceGenerator implements PieceGenerator {
+
+    /**
+     * The source of randomness.
+     */
+    private final SplitMix myRandom;
+
+    /**
+     * The current bag.
+     */
+    private final TetrisPiece[] myBag;
+
+    /**
+     * The index of the next piece to deal from the bag.
+     */
+    private int myIndex;
+
+    /**
+     * Constructs a generator with the given seed.
+     * Generators with equal seeds produce equal sequences.
+     *
+     * @param theSeed the seed.
+     */
+    public BagPieceGenerator(final long theSeed) {
+        myRandom = new SplitMix(theSeed);
+        myBag = TetrisPiece.values();
+        myIndex = myBag.length;
+    }
+
+    /**
+     * Constructs a generator in a saved state.
+     *
+     * @param theState the state of the source of randomness.
+     * @param theBag the current bag; it is copied.
+     * @param theIndex the index of the next piece to deal from the bag.
+     */
+    BagPieceGenerator(final long theState, final TetrisPiece[] theBag, final int theIndex) {
+        myRandom = new SplitMix(theState);
+        myBag = theBag.clone();
+        myIndex = theIndex;
+    }
+
+    /**
+     * Returns the state of the source of randomness.
+     *
+     * @return the state.
+     */
+    long getState() {
+        return myRandom.getState();
+    }
+
+    /**
+     * Returns the current bag.
+     *
+     * @return a copy of the bag.
+     */
+    TetrisPiece[] getBag() {
+        return myBag.clone();
+    }
+
+    /**
+     * Returns the index of the next piece to deal from the bag.
+     *
+     * @return the index.
+     */
+    int getIndex() {
+        return myIndex;
+    }
+
+    @Override
+    public TetrisPiece next() {
+        if (myIndex == myBag.length) {
+            shuffle();
+            myIndex = 0;
+        }
+        final TetrisPiece result = myBag[myIndex];
+        myIndex++;
+        return result;
+    }
+
+    @Override
+    public PieceGenerator copy() {
+        return new BagPieceGenerator(myRandom.getState(), myBag, myIndex);
+    }
+
+    /**
+     * Shuffles the bag (Fisher-Yates).
+     */
+    private void shuffle() {
+        for (int i = myBag.length - 1; i > 0; i--) {
+            final int j = myRandom.nextInt(i + 1);
+            final TetrisPiece swap = myBag[i];
+            myBag[i] = myBag[j];
+            myBag[j] = swap;
+        }
+    }
+}
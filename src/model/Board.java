@@ -7,16 +7,19 @@
 package model;
 
 import java.awt.Color;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Observable;
 
-import model.wallkicks.WallKick;
-
 /**
  * Represents a Tetris board.
  * 
+ * A Board wraps a headless GameCore and reports its events to Observers:
+ * a BoardChange after every change to the board, an Integer[] of cleared
+ * rows, the next TetrisPiece, and Boolean true when the game ends.
+ * 
  * @author Alan Fowler
  * @version Winter 2015
  */
@@ -38,44 +41,9 @@ public class Board extends Observable {
     // Instance fields
     
     /**
-     * Width of the game board.
-     */
-    private final int myWidth;
-
-    /**
-     * Height of the game board.
-     */
-    private final int myHeight;
-    
-    /**
-     * The frozen blocks on the board.
-     */
-    private final List<Color[]> myFrozenBlocks;
-    
-    /**
-     * The game over state.
-     */
-    private boolean myGameOver;
-
-    /**
-     * Contains a non random sequence of TetrisPieces to loop through.
-     */
-    private List<TetrisPiece> myNonRandomPieces;
-
-    /**
-     * The current index in the non random piece sequence.
-     */
-    private int mySequenceIndex;
-    
-    /**
-     * Piece that is next to play.
-     */
-    private TetrisPiece myNextPiece;
-    
-    /**
-     * Piece that is currently movable.
+     * The game engine holding the board state.
      */
-    private MovableTetrisPiece myCurrentPiece;
+    private final GameCore myCore;
     
     // Constructors
 
@@ -92,23 +60,13 @@ public class Board extends Observable {
      * 
      * @param theWidth Width of the Tetris game board.
      * @param theHeight Height of the Tetris game board.
+     * @throws IllegalArgumentException if the width is not between 1 and 64
+     *         or the height is not positive.
      */
     public Board(final int theWidth, final int theHeight) {
         super();
-        myWidth = theWidth;
-        myHeight = theHeight;
-        myFrozenBlocks = new LinkedList<Color[]>();
-        for (int h = 0; h < myHeight; h++) {
-            myFrozenBlocks.add(new Color[myWidth]);
-        }
-        myGameOver = false;
-         
-        myNonRandomPieces = new ArrayList<TetrisPiece>();
-        mySequenceIndex = 0;
-        
-        /*  myNextPiece and myCurrentPiece
-         *  are initialized by the newGame() method.
-         */
+        myCore = new GameCore(theWidth, theHeight);
+        myCore.setListener(new CoreListener());
     }
     
 
@@ -120,7 +78,7 @@ public class Board extends Observable {
      * @return Width of the board.
      */
     public int getWidth() {
-        return myWidth;
+        return myCore.getWidth();
     }
 
     /**
@@ -129,10 +87,98 @@ public class Board extends Observable {
      * @return Height of the board.
      */
     public int getHeight() {
-        return myHeight;
+        return myCore.getHeight();
     }
+
     
+    /**
+     * Get the height of a column: one more than the row of its highest
+     * frozen block, or zero if the column is empty.
+     * 
+     * @param theColumn the column, from 0 to getWidth() - 1.
+     * @return the height of the column.
+     */
+    public int getColumnHeight(final int theColumn) {
+        return myCore.getColumnHeight(theColumn);
+    }
+
+    /**
+     * Get the heights of all columns, as described by getColumnHeight().
+     * 
+     * @return a new array of column heights, leftmost column first.
+     */
+    public int[] getColumnHeights() {
+        return myCore.getColumnHeights();
+    }
+
+    /**
+     * Get the number of holes on the board: empty cells that have a
+     * frozen block somewhere above them in the same column.
+     * 
+     * @return the number of holes.
+     */
+    public int getHoleCount() {
+        return myCore.getHoleCount();
+    }
+
+    /**
+     * Get the number of steps since the game started.
+     * 
+     * @return the current tick.
+     */
+    public long getTicks() {
+        return myCore.getTicks();
+    }
+
+    /**
+     * Get the Zobrist hash of the frozen blocks.
+     * 
+     * @return the hash of the frozen blocks.
+     * @see GameCore#getFrozenHash()
+     */
+    public long getFrozenHash() {
+        return myCore.getFrozenHash();
+    }
+
+    /**
+     * Get the Zobrist hash of the frozen blocks plus the current piece.
+     * 
+     * @return the hash of the position.
+     * @see GameCore#getHash()
+     */
+    public long getHash() {
+        return myCore.getHash();
+    }
+
+    /**
+     * Get the color of a frozen block.
+     * 
+     * @param theColumn the column of the cell.
+     * @param theRow the row of the cell.
+     * @return the color of the frozen block, or null if the cell is empty.
+     */
+    public Color getFrozenColor(final int theColumn, final int theRow) {
+        final int color = myCore.getCell(theColumn, theRow);
+        Color result = null;
+        if (color != 0) {
+            result = TetrisPiece.fromPaletteIndex(color).getColor();
+        }
+        return result;
+    }
 
+    /**
+     * Returns a full snapshot of the board: the frozen blocks plus the
+     * current piece, with four empty rows of headroom above the board.
+     * 
+     * Observers are notified with a BoardChange describing only what
+     * changed; this method is for observers that need the whole board,
+     * for example when they start watching a game already in progress.
+     * 
+     * @return a new list of rows, bottom row first.
+     */
+    public List<Color[]> getBoardData() {
+        return new BoardData().getBoardData();
+    }
 
     /**
      * Resets the board for a new game.
@@ -140,29 +186,130 @@ public class Board extends Observable {
      * and before each new game.
      */
     public void newGame() {
-        
-        mySequenceIndex = 0;
-        myFrozenBlocks.clear();
-        for (int h = 0; h < myHeight; h++) {
-            myFrozenBlocks.add(new Color[myWidth]);
-        }
+        myCore.newGame();
+    }
 
-        myGameOver = false;
-        myCurrentPiece = nextMovablePiece(true);
-        
-        setChanged();
-        notifyObservers(new BoardData().getBoardData());
+    /**
+     * Finds every final placement the current piece can reach.
+     * 
+     * @return the reachable placements.
+     * @see GameCore#getPlacements()
+     */
+    public List<Placement> getPlacements() {
+        return myCore.getPlacements();
+    }
+
+    /**
+     * Moves the current piece straight to a placement and freezes it there.
+     * 
+     * @param thePlacement the placement of the current piece.
+     * @return true if the piece was placed; false if the game is over.
+     * @throws IllegalArgumentException if the placement is not a legal
+     *         resting position of the current piece.
+     * @see GameCore#place(Placement)
+     */
+    public boolean place(final Placement thePlacement) {
+        return myCore.place(thePlacement);
+    }
+
+    /**
+     * Saves the complete state of the game: the frozen blocks, the current
+     * and next pieces, the position in the piece sequence and the game
+     * over state.
+     * 
+     * @return a snapshot that restore() can return the game to.
+     */
+    public GameCore.Snapshot snapshot() {
+        return myCore.snapshot();
+    }
+
+    /**
+     * Saves the complete state of the game into an existing snapshot.
+     * 
+     * @param theTarget the snapshot to overwrite.
+     * @throws IllegalArgumentException if the snapshot is for a board of
+     *         a different size.
+     */
+    public void snapshot(final GameCore.Snapshot theTarget) {
+        myCore.snapshot(theTarget);
+    }
+
+    /**
+     * Takes an immutable picture of the board for rendering.
+     * 
+     * @return the state of the frozen blocks, the pieces and the game.
+     */
+    public BoardState getState() {
+        return new BoardState(myCore);
+    }
+
+    /**
+     * Restores the game to a saved state. Observers receive a reset
+     * BoardChange and the restored next piece.
+     * 
+     * @param theSnapshot the snapshot to restore.
+     * @throws IllegalArgumentException if the snapshot is for a board of
+     *         a different size.
+     */
+    public void restore(final GameCore.Snapshot theSnapshot) {
+        myCore.restore(theSnapshot);
+    }
+
+    /**
+     * Writes the complete state of the game in the compact binary format.
+     * 
+     * @param theBuffer the buffer to write to.
+     * @throws IllegalArgumentException if the game uses a piece generator
+     *         that cannot be saved, or the board is taller than
+     *         SaveFormat.MAX_HEIGHT.
+     * @see SaveFormat#write(GameCore, ByteBuffer)
+     */
+    public void save(final ByteBuffer theBuffer) {
+        SaveFormat.write(myCore, theBuffer);
+    }
+
+    /**
+     * Loads a game written by save(). Observers receive a reset
+     * BoardChange and the loaded next piece.
+     * 
+     * @param theBuffer the buffer to read from.
+     * @throws StreamCorruptedException if the buffer does not hold a save.
+     * @throws IllegalArgumentException if the save is for a board of a
+     *         different size.
+     * @see SaveFormat#read(ByteBuffer)
+     */
+    public void load(final ByteBuffer theBuffer) throws StreamCorruptedException {
+        myCore.restore(SaveFormat.read(theBuffer).snapshot());
+    }
+
+    /**
+     * Sets the recorder of player actions, replacing any previous recorder.
+     * 
+     * @param theRecorder the recorder, or null for none.
+     * @see GameCore#setRecorder(GameRecorder)
+     */
+    public void setRecorder(final GameRecorder theRecorder) {
+        myCore.setRecorder(theRecorder);
     }
 
     /**
      * Sets a non random sequence of pieces to loop through.
+     * The list is not copied and must not be modified while it is in use.
      * 
      * @param thePieces the List of non random TetrisPieces.
      */
     public void setPieceSequence(final List<TetrisPiece> thePieces) {
-        myNonRandomPieces = new ArrayList<TetrisPiece>(thePieces);
-        mySequenceIndex = 0;
-        myCurrentPiece = nextMovablePiece(true);
+        myCore.setPieceSequence(thePieces);
+    }
+    
+    /**
+     * Sets the generator that chooses the pieces, discarding any non random
+     * sequence. Set it before newGame() for a reproducible game.
+     * 
+     * @param theGenerator the piece generator.
+     */
+    public void setPieceGenerator(final PieceGenerator theGenerator) {
+        myCore.setPieceGenerator(theGenerator);
     }
     
     /**
@@ -174,13 +321,7 @@ public class Board extends Observable {
      * - clearing full lines as needed
      */
     public void step() {
-        /*
-         * Calling the down() method from here should be sufficient
-         * to advance the board by one 'step'.
-         * However, more code could be added to this method
-         * to implement additional functionality
-         */
-        down();
+        myCore.step();
     }
     
     /**
@@ -189,177 +330,73 @@ public class Board extends Observable {
      * Clear full lines.
      */
     public void down() {
-        if (!move(myCurrentPiece.down())) {
-            // the piece froze, so clear lines and update current piece
-            addPieceToBoardData(myFrozenBlocks, myCurrentPiece);
-            checkRows();
-            if (!myGameOver) {
-                myCurrentPiece = nextMovablePiece(false);
-            }
-            setChanged();
-            notifyObservers(new BoardData().getBoardData());
-        }
+        myCore.down();
     }
 
     /**
      * Try to move the movable piece left.
      */
     public void left() {
-        if (myCurrentPiece != null) {
-            move(myCurrentPiece.left());
-        }
+        myCore.left();
     }
 
     /**
      * Try to move the movable piece right.
      */
     public void right() {
-        if (myCurrentPiece != null) {
-            move(myCurrentPiece.right());
-        }
+        myCore.right();
     }
 
     /**
      * Try to rotate the movable piece in the clockwise direction.
      */
     public void rotateCW() {
-        if (myCurrentPiece != null) {
-            if (myCurrentPiece.getTetrisPiece() == TetrisPiece.O) {
-                move(myCurrentPiece.rotateCW());
-            } else {
-                final MovableTetrisPiece cwPiece = myCurrentPiece.rotateCW();
-                final Point[] offsets = WallKick.getWallKicks(cwPiece.getTetrisPiece(),
-                                                    myCurrentPiece.getRotation(),
-                                                    cwPiece.getRotation());
-                for (final Point p : offsets) {
-                    final Point offsetLocation = cwPiece.getPosition().transform(p);
-                    final MovableTetrisPiece temp = cwPiece.setPosition(offsetLocation);
-                    if (move(temp)) {
-                        break;
-                    }
-                }
-            }
-        }
+        myCore.rotateCW();
     }
     
     /**
      * Try to rotate the movable piece in the counter-clockwise direction.
      */
     public void rotateCCW() {
-        if (myCurrentPiece != null) {
-            if (myCurrentPiece.getTetrisPiece() == TetrisPiece.O) {
-                move(myCurrentPiece.rotateCCW());
-            } else {
-                final MovableTetrisPiece ccwPiece = myCurrentPiece.rotateCCW();
-                final Point[] offsets = WallKick.getWallKicks(ccwPiece.getTetrisPiece(),
-                                                    myCurrentPiece.getRotation(),
-                                                    ccwPiece.getRotation());
-                for (final Point p : offsets) {
-                    final Point offsetLocation = ccwPiece.getPosition().transform(p);
-                    final MovableTetrisPiece temp = ccwPiece.setPosition(offsetLocation);
-                    if (move(temp)) {
-                        break;
-                    }
-                }
-            }
-        }
+        myCore.rotateCCW();
     }
 
     /**
      * Drop the piece until piece is set.
+     * Observers receive a single BoardChange for the whole drop.
      */
     public void drop() {
-        if (!myGameOver) {
-            while (isPieceLegal(myCurrentPiece.down())) {
-                down();  // move down as far as possible
-            }
-            down();  // move down one more time to freeze in place
-        }
+        myCore.drop();
     }
-    
-
 
     @Override
     public String toString() {
-        final List<Color[]> board = getBoard();
-        board.add(new Color[myWidth]);
-        board.add(new Color[myWidth]);
-        board.add(new Color[myWidth]);
-        board.add(new Color[myWidth]);
-        if (myCurrentPiece != null) {
-            addPieceToBoardData(board, myCurrentPiece);
-        }
-        final StringBuilder sb = new StringBuilder();
-        for (int i = board.size() - 1; i >= 0; i--) {
-            final Color[] row = board.get(i);
-            sb.append('|');
-            for (final Color c : row) {
-                if (c == null) {
-                    sb.append(' ');
-                } else {
-                    sb.append('*');
-                }
-            }
-            sb.append("|\n");
-            if (i == this.myHeight) {
-                sb.append(' ');
-                for (int j = 0; j < this.myWidth; j++) {
-                    sb.append('-');
-                }
-                sb.append('\n');
-            }
-        }
-        sb.append('|');
-        for (int w = 0; w < myWidth; w++) {
-            sb.append('-');
-        }
-        sb.append('|');
-        return sb.toString();
+        return myCore.toString();
     }
 
     
     // private helper methods
     
     /**
-     * Helper function to check if the current piece can be shifted to the
-     * specified position.
-     * 
-     * @param theMovedPiece the position to attempt to shift the current piece
-     * @return True if the move succeeded
-     */
-    private boolean move(final MovableTetrisPiece theMovedPiece) {
-        boolean result = false;
-        if (isPieceLegal(theMovedPiece)) {
-            myCurrentPiece = theMovedPiece;
-            result = true;
-            setChanged();
-            notifyObservers(new BoardData().getBoardData());
-        }
-        return result;
-    }
-
-    /**
-     * Helper function to test if the piece is in a legal state.
-     * 
-     * Illegal states:
-     * - points of the piece exceed the bounds of the board
-     * - points of the piece collide with frozen blocks on the board
+     * Helper function to copy the board.
      * 
-     * @param thePiece MovableTetrisPiece to test.
-     * @return Returns true if the piece is in a legal state; false otherwise
+     * @return A new copy of the board.
      */
-    private boolean isPieceLegal(final MovableTetrisPiece thePiece) {
-        boolean result = true;
-        
-        for (final Point p : thePiece.getBoardPoints()) {
-            if (p.x() < 0 || p.x() >= myWidth) {
-                result = false;
-            }
-            if (p.y() < 0) {
-                result = false;
+    private List<Color[]> getBoard() {
+        final List<Color[]> board = new ArrayList<Color[]>();
+        for (int y = 0; y < myCore.getHeight(); y++) {
+            final Color[] row = new Color[myCore.getWidth()];
+            if (myCore.getRowMask(y) != 0L) {
+                for (int x = 0; x < row.length; x++) {
+                    final int color = myCore.getCell(x, y);
+                    if (color != 0) {
+                        row[x] = TetrisPiece.fromPaletteIndex(color).getColor();
+                    }
+                }
             }
+            board.add(row);
         }
-        return result && !collision(thePiece);      
+        return board;
     }
 
     /**
@@ -368,166 +405,18 @@ public class Board extends Observable {
      * Allows a single data structure to represent the current piece
      * and the frozen blocks.
      * 
-     * @param theFrozenBlocks Board to set the piece on.
+     * @param theBoard Board snapshot to set the piece on.
      * @param thePiece Piece to set on the board.
      */
-    private void addPieceToBoardData(final List<Color[]> theFrozenBlocks,
-                                     final MovableTetrisPiece thePiece) {
+    private void addPieceToSnapshot(final List<Color[]> theBoard,
+                                    final MovableTetrisPiece thePiece) {
         for (final Point p : thePiece.getBoardPoints()) {
-            setPoint(theFrozenBlocks, p, thePiece.getTetrisPiece().getColor());
-        }
-    }
-
-    /**
-     * Checks the board for complete rows.
-     */
-    private void checkRows() {
-        final List<Integer> completeRows = new ArrayList<>();
-        for (final Color[] row : myFrozenBlocks) {
-            boolean complete = true;
-            for (final Color c : row) {
-                if (c == null) {
-                    complete = false;
-                    break;
-                }
-            }
-            if (complete) {
-                completeRows.add(myFrozenBlocks.indexOf(row));
-                setChanged();
-            }
-        }
-        // loop through list backwards removing items by index
-        if (!completeRows.isEmpty()) {
-            for (int i = completeRows.size() - 1; i >= 0; i--) {
-                final Color[] row = myFrozenBlocks.get(completeRows.get(i));
-                myFrozenBlocks.remove(row);
-                myFrozenBlocks.add(new Color[myWidth]);
+            if (p.y() < theBoard.size()) {
+                theBoard.get(p.y())[p.x()] = thePiece.getTetrisPiece().getColor();
             }
         }
-        notifyObservers(completeRows.toArray(new Integer[completeRows.size()]));
-    }
-    
-    /**
-     * Helper function to copy the board.
-     * 
-     * @return A new copy of the board.
-     */
-    private List<Color[]> getBoard() {
-        final List<Color[]> board = new ArrayList<Color[]>();
-        for (final Color[] row : myFrozenBlocks) {
-            board.add(row.clone());
-        }
-        return board;
     }
 
-    /**
-     * Determines if a point is on the game board.
-     * 
-     * @param theBoard Board to test.
-     * @param thePoint Point to test.
-     * @return True if the point is on the board otherwise false.
-     */
-    private boolean isPointOnBoard(final List<Color[]> theBoard, final Point thePoint) {
-        return thePoint.x() >= 0 && thePoint.x() < myWidth && thePoint.y() >= 0
-               && thePoint.y() < theBoard.size();
-    }
-
-    /**
-     * Sets a block as color at a board point.
-     * 
-     * @param theBoard Board to set the point on.
-     * @param thePoint Board point.
-     * @param theColor Color to set at board point.
-     */
-    private void setPoint(final List<Color[]> theBoard,
-                          final Point thePoint,
-                          final Color theColor) {
-        
-        if (isPointOnBoard(theBoard, thePoint)) {
-            final Color[] row = theBoard.get(thePoint.y());
-            row[thePoint.x()] = theColor;
-        } else if (!myGameOver) {
-            myGameOver = true;
-            setChanged();
-            notifyObservers(myGameOver);
-        }
-    }
-
-    /**
-     * Returns the block color at a specific board point.
-     * 
-     * @param thePoint the specific Point to check
-     * @return Color of the block at point or null if no block exists.
-     */
-    private Color getPoint(final Point thePoint) {
-        Color c = null;
-        if (isPointOnBoard(myFrozenBlocks, thePoint)) {
-            c = myFrozenBlocks.get(thePoint.y())[thePoint.x()];
-        }
-        return c;
-    }
-
-    /**
-     * Helper function to determine of a movable block has collided with set
-     * blocks.
-     * 
-     * @param theTest movable TetrisPiece to test for collision.
-     * @return Returns true if any of the blocks has collided with a set board
-     *         block.
-     */
-    private boolean collision(final MovableTetrisPiece theTest) {
-        boolean res = false;
-        for (final Point p : theTest.getBoardPoints()) {
-            if (getPoint(p) != null) {
-                res = true;
-            }
-        }
-        return res;
-    }
-
-    /**
-     * Gets the next MovableTetrisPiece.
-     * 
-     * @param theRestart Restart the non random cycle.
-     * @return A new MovableTetrisPiece.
-     */
-    private MovableTetrisPiece nextMovablePiece(final boolean theRestart) {
-        
-        if (myNextPiece == null || theRestart) {
-            prepareNextMovablePiece();
-        }
-        
-        final TetrisPiece next = myNextPiece;
-        
-        int startY = myHeight - 1;
-        if (myNextPiece == TetrisPiece.I) {
-            startY--; 
-        }
-        
-        prepareNextMovablePiece();
-        return new MovableTetrisPiece(
-                       next,
-                       new Point((myWidth - myNextPiece.getWidth()) / 2, startY));
-    }
-    
-    /**
-     * Prepares the Next movable piece for preview.
-     */
-    private void prepareNextMovablePiece() {
-        
-        final boolean share = myNextPiece != null;
-        if (myNonRandomPieces == null || myNonRandomPieces.isEmpty()) {
-            myNextPiece = TetrisPiece.getRandomPiece();
-        } else {
-            mySequenceIndex %= myNonRandomPieces.size();
-            myNextPiece = myNonRandomPieces.get(mySequenceIndex++);
-        }
-        if (share && !myGameOver) {
-            setChanged();
-            notifyObservers(myNextPiece);
-        }
-    }    
-
     
     // Inner classes
 
@@ -547,12 +436,13 @@ public class Board extends Observable {
          */
         protected BoardData() {
             myBoardData = getBoard();
-            myBoardData.add(new Color[myWidth]);
-            myBoardData.add(new Color[myWidth]);
-            myBoardData.add(new Color[myWidth]);
-            myBoardData.add(new Color[myWidth]);
-            if (myCurrentPiece != null) {
-                addPieceToBoardData(myBoardData, myCurrentPiece);
+            final int width = myCore.getWidth();
+            myBoardData.add(new Color[width]);
+            myBoardData.add(new Color[width]);
+            myBoardData.add(new Color[width]);
+            myBoardData.add(new Color[width]);
+            if (myCore.getCurrentPiece() != null) {
+                addPieceToSnapshot(myBoardData, myCore.getCurrentPiece());
             }
         }
 
@@ -571,5 +461,40 @@ public class Board extends Observable {
         
     } // end inner class BoardData
 
+    /**
+     * Forwards the events of the GameCore to the registered Observers.
+     */
+    private final class CoreListener implements GameListener {
+
+        @Override
+        public void gameOver() {
+            setChanged();
+            notifyObservers(Boolean.TRUE);
+        }
+
+        @Override
+        public void rowsCleared(final int[] theRows) {
+            final Integer[] completeRows = new Integer[theRows.length];
+            for (int i = 0; i < theRows.length; i++) {
+                completeRows[i] = theRows[i];
+            }
+            setChanged();
+            notifyObservers(completeRows);
+        }
+
+        @Override
+        public void nextPieceChanged(final TetrisPiece thePiece) {
+            setChanged();
+            notifyObservers(thePiece);
+        }
+
+        @Override
+        public void boardChanged(final BoardChange theChange) {
+            setChanged();
+            notifyObservers(theChange);
+        }
+
+    } // end inner class CoreListener
+
     
 }
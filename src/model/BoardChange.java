@@ -0,0 +1,227 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+/**
+ * Describes what changed on a Board after a single game action.
+ *
+ * Rather than a full copy of the board, a BoardChange carries only the
+ * cells of the active piece before and after the action, the piece that
+ * froze (if any) and the rows it froze into, and the rows that were
+ * cleared. An observer that has seen every change since the last reset
+ * can rebuild the board from these deltas:
+ *
+ * 1. if the change is a reset, reload the frozen blocks from the board
+ *    (they are empty for a new game; a restored game keeps its blocks)
+ * 2. if a piece froze, set the frozen points to the frozen piece color
+ * 3. remove the cleared rows (indices are from before the removal)
+ * 4. draw the active piece at the new piece points
+ *
+ * A BoardChange is immutable.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class BoardChange {
+
+    /**
+     * An empty array of points.
+     */
+    private static final Point[] NO_POINTS = new Point[0];
+
+    /**
+     * An empty array of row indices.
+     */
+    private static final int[] NO_ROWS = new int[0];
+
+    /**
+     * Whether the frozen blocks were emptied for a new game.
+     */
+    private final boolean myReset;
+
+    /**
+     * The active piece after the change.
+     */
+    private final TetrisPiece myPiece;
+
+    /**
+     * The board points of the active piece before the change.
+     */
+    private final Point[] myOldPoints;
+
+    /**
+     * The board points of the active piece after the change.
+     */
+    private final Point[] myNewPoints;
+
+    /**
+     * The piece that froze, or null if no piece froze.
+     */
+    private final TetrisPiece myFrozenPiece;
+
+    /**
+     * The board points the frozen piece was set at.
+     */
+    private final Point[] myFrozenPoints;
+
+    /**
+     * The rows the frozen piece was set into, in ascending order.
+     */
+    private final int[] myFrozenRows;
+
+    /**
+     * The rows that were cleared, in ascending order.
+     */
+    private final int[] myClearedRows;
+
+    /**
+     * Constructs a BoardChange.
+     *
+     * @param theReset whether the frozen blocks were emptied.
+     * @param thePiece the active piece after the change, or null.
+     * @param theOldPoints the active piece points before the change, or null.
+     * @param theNewPoints the active piece points after the change, or null.
+     * @param theFrozenPiece the piece that froze, or null.
+     * @param theFrozenPoints the points the piece froze at, or null.
+     * @param theFrozenRows the rows the piece froze into, or null.
+     * @param theClearedRows the rows that were cleared, or null.
+     */
+    BoardChange(final boolean theReset,
+                final TetrisPiece thePiece,
+                final Point[] theOldPoints,
+                final Point[] theNewPoints,
+                final TetrisPiece theFrozenPiece,
+                final Point[] theFrozenPoints,
+                final int[] theFrozenRows,
+                final int[] theClearedRows) {
+        myReset = theReset;
+        myPiece = thePiece;
+        myOldPoints = orEmpty(theOldPoints);
+        myNewPoints = orEmpty(theNewPoints);
+        myFrozenPiece = theFrozenPiece;
+        myFrozenPoints = orEmpty(theFrozenPoints);
+        myFrozenRows = orEmpty(theFrozenRows);
+        myClearedRows = orEmpty(theClearedRows);
+    }
+
+    /**
+     * Returns whether the frozen blocks were emptied for a new game.
+     *
+     * @return true if this change starts a new game.
+     */
+    public boolean isReset() {
+        return myReset;
+    }
+
+    /**
+     * Returns the active piece after the change.
+     *
+     * @return the active TetrisPiece, or null if there is none.
+     */
+    public TetrisPiece getPiece() {
+        return myPiece;
+    }
+
+    /**
+     * Returns the board points of the active piece before the change.
+     *
+     * @return the old active piece points.
+     */
+    public Point[] getOldPoints() {
+        return myOldPoints.clone();
+    }
+
+    /**
+     * Returns the board points of the active piece after the change.
+     *
+     * @return the new active piece points.
+     */
+    public Point[] getNewPoints() {
+        return myNewPoints.clone();
+    }
+
+    /**
+     * Returns the piece that froze during the change.
+     *
+     * @return the frozen TetrisPiece, or null if no piece froze.
+     */
+    public TetrisPiece getFrozenPiece() {
+        return myFrozenPiece;
+    }
+
+    /**
+     * Returns the board points the frozen piece was set at. After a hard
+     * drop these differ from the old active piece points.
+     *
+     * @return the frozen points, or an empty array if no piece froze.
+     */
+    public Point[] getFrozenPoints() {
+        return myFrozenPoints.clone();
+    }
+
+    /**
+     * Returns the rows the frozen piece was set into, before any rows were
+     * cleared.
+     *
+     * @return the frozen rows in ascending order.
+     */
+    public int[] getFrozenRows() {
+        return myFrozenRows.clone();
+    }
+
+    /**
+     * Returns the rows that were cleared.
+     *
+     * @return the cleared rows in ascending order.
+     */
+    public int[] getClearedRows() {
+        return myClearedRows.clone();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(64);
+        sb.append("BoardChange[piece=").append(myPiece);
+        if (myReset) {
+            sb.append(", reset");
+        }
+        if (myFrozenPiece != null) {
+            sb.append(", frozen=").append(myFrozenPiece);
+            sb.append(", cleared=").append(myClearedRows.length);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Replaces a null array of points with an empty one.
+     *
+     * @param thePoints the points, or null.
+     * @return the points, or an empty array.
+     */
+    private static Point[] orEmpty(final Point[] thePoints) {
+        Point[] result = NO_POINTS;
+        if (thePoints != null) {
+            result = thePoints;
+        }
+        return result;
+    }
+
+    /**
+     * Replaces a null array of rows with an empty one.
+     *
+     * @param theRows the rows, or null.
+     * @return the rows, or an empty array.
+     */
+    private static int[] orEmpty(final int[] theRows) {
+        int[] result = NO_ROWS;
+        if (theRows != null) {
+            result = theRows;
+        }
+        return result;
+    }
+}
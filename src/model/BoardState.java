@@ -0,0 +1,239 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * An immutable picture of a game at one moment: the frozen blocks, the
+ * active piece and the next piece, and the game's progress.
+ *
+ * A BoardState is what a game loop publishes to the renderer. It shares
+ * nothing with the game it was taken from, so it can be read on any
+ * thread while the game goes on. Two states can be compared row by row to
+ * find what changed between them.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class BoardState {
+
+    /**
+     * An empty array of points.
+     */
+    private static final Point[] NO_POINTS = new Point[0];
+
+    /**
+     * Width of the board.
+     */
+    private final int myWidth;
+
+    /**
+     * Height of the board.
+     */
+    private final int myHeight;
+
+    /**
+     * The occupancy mask of each row.
+     */
+    private final long[] myRowMasks;
+
+    /**
+     * The palette index of each cell.
+     */
+    private final byte[] myColors;
+
+    /**
+     * The active piece, or null before the first game.
+     */
+    private final TetrisPiece myPiece;
+
+    /**
+     * The board points of the active piece.
+     */
+    private final Point[] myPiecePoints;
+
+    /**
+     * The next piece, or null before the first game.
+     */
+    private final TetrisPiece myNextPiece;
+
+    /**
+     * The game over state.
+     */
+    private final boolean myGameOver;
+
+    /**
+     * The number of rows cleared since the game started.
+     */
+    private final int myLinesCleared;
+
+    /**
+     * The number of steps since the game started.
+     */
+    private final long myTicks;
+
+    /**
+     * Takes the state of a game.
+     *
+     * @param theGame the game.
+     */
+    BoardState(final GameCore theGame) {
+        myWidth = theGame.getWidth();
+        myHeight = theGame.getHeight();
+        myRowMasks = new long[myHeight];
+        myColors = new byte[myWidth * myHeight];
+        for (int y = 0; y < myHeight; y++) {
+            myRowMasks[y] = theGame.getRowMask(y);
+            if (myRowMasks[y] != 0L) {
+                for (int x = 0; x < myWidth; x++) {
+                    myColors[y * myWidth + x] = (byte) theGame.getCell(x, y);
+                }
+            }
+        }
+        final MovableTetrisPiece piece = theGame.getCurrentPiece();
+        if (piece == null) {
+            myPiece = null;
+            myPiecePoints = NO_POINTS;
+        } else {
+            myPiece = piece.getTetrisPiece();
+            myPiecePoints = piece.getBoardPoints();
+        }
+        myNextPiece = theGame.getNextPiece();
+        myGameOver = theGame.isGameOver();
+        myLinesCleared = theGame.getLinesCleared();
+        myTicks = theGame.getTicks();
+    }
+
+    /**
+     * Get the width of the board.
+     *
+     * @return Width of the board.
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * Get the height of the board.
+     *
+     * @return Height of the board.
+     */
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * Get the occupancy of a row of frozen blocks.
+     *
+     * @param theRow the row, from 0 (bottom) to getHeight() - 1.
+     * @return a bit mask with bit x set when the cell (x, theRow) is frozen.
+     */
+    public long getRowMask(final int theRow) {
+        return myRowMasks[theRow];
+    }
+
+    /**
+     * Get the color of a frozen block.
+     *
+     * @param theColumn the column of the cell.
+     * @param theRow the row of the cell.
+     * @return the color of the frozen block, or null if the cell is empty.
+     */
+    public Color getFrozenColor(final int theColumn, final int theRow) {
+        final int color = myColors[theRow * myWidth + theColumn];
+        Color result = null;
+        if (color != 0) {
+            result = TetrisPiece.fromPaletteIndex(color).getColor();
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether a row of frozen blocks is the same in another state
+     * of a board of the same width.
+     *
+     * @param theOther the other state.
+     * @param theRow the row.
+     * @return true if the row has the same blocks in the same colors.
+     */
+    public boolean isRowEqual(final BoardState theOther, final int theRow) {
+        boolean result = myRowMasks[theRow] == theOther.myRowMasks[theRow];
+        final int start = theRow * myWidth;
+        for (int i = start; result && i < start + myWidth; i++) {
+            result = myColors[i] == theOther.myColors[i];
+        }
+        return result;
+    }
+
+    /**
+     * Get the piece that is currently movable.
+     *
+     * @return the current piece, or null before the first game.
+     */
+    public TetrisPiece getPiece() {
+        return myPiece;
+    }
+
+    /**
+     * Get the board points of the piece that is currently movable.
+     *
+     * @return a copy of the board points; empty before the first game.
+     */
+    public Point[] getPiecePoints() {
+        return myPiecePoints.clone();
+    }
+
+    /**
+     * Returns whether the active piece is the same and in the same place in
+     * another state.
+     *
+     * @param theOther the other state.
+     * @return true if the active piece has not changed.
+     */
+    public boolean isPieceEqual(final BoardState theOther) {
+        return myPiece == theOther.myPiece
+               && Arrays.equals(myPiecePoints, theOther.myPiecePoints);
+    }
+
+    /**
+     * Get the piece that will be played after the current one.
+     *
+     * @return the next piece, or null before the first game.
+     */
+    public TetrisPiece getNextPiece() {
+        return myNextPiece;
+    }
+
+    /**
+     * Get the game over state.
+     *
+     * @return true if the game is over.
+     */
+    public boolean isGameOver() {
+        return myGameOver;
+    }
+
+    /**
+     * Get the number of rows cleared since the game started.
+     *
+     * @return the number of lines cleared.
+     */
+    public int getLinesCleared() {
+        return myLinesCleared;
+    }
+
+    /**
+     * Get the number of steps since the game started.
+     *
+     * @return the current tick.
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+/**
+ * The player actions of a game, as recorded in a replay.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public enum GameAction {
+
+    /**
+     * Starts a new game.
+     */
+    NEW_GAME,
+
+    /**
+     * Advances the game by one tick of gravity.
+     */
+    STEP,
+
+    /**
+     * Moves the current piece left.
+     */
+    LEFT,
+
+    /**
+     * Moves the current piece right.
+     */
+    RIGHT,
+
+    /**
+     * Moves the current piece down.
+     */
+    DOWN,
+
+    /**
+     * Drops the current piece.
+     */
+    DROP,
+
+    /**
+     * Rotates the current piece clockwise.
+     */
+    ROTATE_CW,
+
+    /**
+     * Rotates the current piece counterclockwise.
+     */
+    ROTATE_CCW;
+
+    /**
+     * Performs this action on a game.
+     *
+     * @param theGame the game.
+     */
+    public void apply(final GameCore theGame) {
+        switch (this) {
+            case NEW_GAME:
+                theGame.newGame();
+                break;
+            case STEP:
+                theGame.step();
+                break;
+            case LEFT:
+                theGame.left();
+                break;
+            case RIGHT:
+                theGame.right();
+                break;
+            case DOWN:
+                theGame.down();
+                break;
+            case DROP:
+                theGame.drop();
+                break;
+            case ROTATE_CW:
+                theGame.rotateCW();
+                break;
+            default:
+                theGame.rotateCCW();
+        }
+    }
+}
@@ -0,0 +1,1346 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import model.wallkicks.WallKick;
+
+/**
+ * The headless game engine behind a Tetris board.
+ *
+ * A GameCore holds the complete game state and rules but does not depend
+ * on AWT and is not Observable: frozen blocks are stored as palette
+ * indices (see TetrisPiece.getPaletteIndex()) and events go to at most one
+ * plain GameListener. Board wraps a GameCore for the Swing view; simulation
+ * code can drive a GameCore directly.
+ *
+ * The public game methods map one-to-one onto those of Board.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class GameCore {
+
+    // Class constants
+
+    /**
+     * The widest board whose rows fit in a single occupancy mask.
+     */
+    private static final int MAX_WIDTH = Long.SIZE;
+
+    /**
+     * The most rows a single TetrisPiece can span.
+     */
+    private static final int MAX_PIECE_ROWS = 4;
+
+    /**
+     * Rows of headroom shown above the board by toString().
+     */
+    private static final int HEADROOM = 4;
+
+
+    // Instance fields
+
+    /**
+     * Width of the game board.
+     */
+    private final int myWidth;
+
+    /**
+     * Height of the game board.
+     */
+    private final int myHeight;
+
+    /**
+     * Occupancy of the frozen blocks, one bit mask per row.
+     * Bit x of myRowMasks[y] is set when the cell (x, y) is frozen.
+     */
+    private final long[] myRowMasks;
+
+    /**
+     * The palette indices of the frozen blocks, one byte per cell stored
+     * row by row. Zero marks an empty cell.
+     */
+    private final byte[] myColors;
+
+    /**
+     * The occupancy mask of a complete row.
+     */
+    private final long myFullRow;
+
+    /**
+     * The height of each column: one more than the row of its highest
+     * frozen block, or zero for an empty column.
+     */
+    private final int[] myColumnHeights;
+
+    /**
+     * The number of frozen blocks in each column.
+     */
+    private final int[] myColumnBlocks;
+
+    /**
+     * The number of empty cells below the top of their column.
+     */
+    private int myHoles;
+
+    /**
+     * The Zobrist key of each cell, row by row.
+     */
+    private final long[] myCellKeys;
+
+    /**
+     * The Zobrist hash of the frozen blocks.
+     */
+    private long myHash;
+
+    /**
+     * Scratch space for the indices of the rows completed by a frozen piece.
+     */
+    private final int[] myCompleteRows;
+
+    /**
+     * The game over state.
+     */
+    private boolean myGameOver;
+
+    /**
+     * Chooses the pieces when no non random sequence is set.
+     */
+    private PieceGenerator myGenerator;
+
+    /**
+     * Loops through a non random sequence of TetrisPieces, or null.
+     */
+    private SequencePieceGenerator myNonRandomPieces;
+
+    /**
+     * Piece that is next to play.
+     */
+    private TetrisPiece myNextPiece;
+
+    /**
+     * Piece that is currently movable.
+     */
+    private MovableTetrisPiece myCurrentPiece;
+
+    /**
+     * The number of pieces frozen since the game started.
+     */
+    private int myPiecesPlaced;
+
+    /**
+     * The number of rows cleared since the game started.
+     */
+    private int myLinesCleared;
+
+    /**
+     * The number of steps since the game started.
+     */
+    private long myTicks;
+
+    /**
+     * The listener for game events, or null.
+     */
+    private GameListener myListener;
+
+    /**
+     * The recorder of player actions, or null.
+     */
+    private GameRecorder myRecorder;
+
+    /**
+     * Enumerates placements, created on first use.
+     */
+    private PlacementFinder myPlacementFinder;
+
+    // Constructors
+
+    /**
+     * Constructs a game engine for a board of the given size.
+     *
+     * @param theWidth Width of the Tetris game board.
+     * @param theHeight Height of the Tetris game board.
+     * @throws IllegalArgumentException if the width is not between 1 and 64
+     *         or the height is not positive.
+     */
+    public GameCore(final int theWidth, final int theHeight) {
+        checkSize(theWidth, theHeight);
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myRowMasks = new long[myHeight];
+        myColors = new byte[myWidth * myHeight];
+        myFullRow = -1L >>> (MAX_WIDTH - myWidth);
+        myColumnHeights = new int[myWidth];
+        myColumnBlocks = new int[myWidth];
+        myCompleteRows = new int[MAX_PIECE_ROWS];
+        myCellKeys = new long[myWidth * myHeight];
+        for (int y = 0; y < myHeight; y++) {
+            for (int x = 0; x < myWidth; x++) {
+                myCellKeys[y * myWidth + x] = Zobrist.cellKey(x, y);
+            }
+        }
+        myGenerator = new UniformPieceGenerator(ThreadLocalRandom.current().nextLong());
+
+        /*  myNextPiece and myCurrentPiece
+         *  are initialized by the newGame() method.
+         */
+    }
+
+
+    /**
+     * Checks that a GameCore can be built for a board size, without
+     * building one.
+     *
+     * @param theWidth Width of the Tetris game board.
+     * @param theHeight Height of the Tetris game board.
+     * @throws IllegalArgumentException if the width is not between 1 and 64
+     *         or the height is not positive.
+     */
+    public static void checkSize(final int theWidth, final int theHeight) {
+        if (theWidth < 1 || theWidth > MAX_WIDTH || theHeight < 1) {
+            throw new IllegalArgumentException("Unsupported board size: "
+                                               + theWidth + " x " + theHeight);
+        }
+    }
+
+
+    // public queries
+
+    /**
+     * Get the width of the board.
+     *
+     * @return Width of the board.
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * Get the height of the board.
+     *
+     * @return Height of the board.
+     */
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * Get the height of a column: one more than the row of its highest
+     * frozen block, or zero if the column is empty.
+     *
+     * @param theColumn the column, from 0 to getWidth() - 1.
+     * @return the height of the column.
+     */
+    public int getColumnHeight(final int theColumn) {
+        return myColumnHeights[theColumn];
+    }
+
+    /**
+     * Get the heights of all columns, as described by getColumnHeight().
+     *
+     * @return a new array of column heights, leftmost column first.
+     */
+    public int[] getColumnHeights() {
+        return myColumnHeights.clone();
+    }
+
+    /**
+     * Get the number of holes on the board: empty cells that have a
+     * frozen block somewhere above them in the same column.
+     *
+     * @return the number of holes.
+     */
+    public int getHoleCount() {
+        return myHoles;
+    }
+
+    /**
+     * Get the Zobrist hash of the frozen blocks. It depends only on which
+     * cells are occupied, not on their colors, and is kept up to date as
+     * pieces freeze and rows are cleared. Equal boards of the same size
+     * have equal hashes.
+     *
+     * @return the hash of the frozen blocks.
+     */
+    public long getFrozenHash() {
+        return myHash;
+    }
+
+    /**
+     * Get the Zobrist hash of the whole position: the frozen blocks plus
+     * the type, rotation and position of the current piece.
+     *
+     * @return the hash of the position.
+     */
+    public long getHash() {
+        return myHash ^ Zobrist.pieceKey(myCurrentPiece);
+    }
+
+    /**
+     * Get the occupancy of a row of frozen blocks.
+     *
+     * @param theRow the row, from 0 (bottom) to getHeight() - 1.
+     * @return a bit mask with bit x set when the cell (x, theRow) is frozen.
+     */
+    public long getRowMask(final int theRow) {
+        return myRowMasks[theRow];
+    }
+
+    /**
+     * Get the palette index of a frozen block.
+     *
+     * @param theColumn the column of the cell.
+     * @param theRow the row of the cell.
+     * @return the palette index of the frozen block, or 0 if the cell is empty.
+     */
+    public int getCell(final int theColumn, final int theRow) {
+        return myColors[theRow * myWidth + theColumn];
+    }
+
+    /**
+     * Get the piece that is currently movable.
+     *
+     * @return the current piece, or null before the first game.
+     */
+    public MovableTetrisPiece getCurrentPiece() {
+        return myCurrentPiece;
+    }
+
+    /**
+     * Get the piece that will be played after the current one.
+     *
+     * @return the next piece, or null before the first game.
+     */
+    public TetrisPiece getNextPiece() {
+        return myNextPiece;
+    }
+
+    /**
+     * Get the game over state.
+     *
+     * @return true if the game is over.
+     */
+    public boolean isGameOver() {
+        return myGameOver;
+    }
+
+    /**
+     * Get the number of pieces frozen since the game started.
+     *
+     * @return the number of pieces placed.
+     */
+    public int getPiecesPlaced() {
+        return myPiecesPlaced;
+    }
+
+    /**
+     * Get the number of rows cleared since the game started.
+     *
+     * @return the number of lines cleared.
+     */
+    public int getLinesCleared() {
+        return myLinesCleared;
+    }
+
+    /**
+     * Get the number of steps since the game started.
+     *
+     * @return the current tick.
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * Sets the generator that chooses the pieces when no non random
+     * sequence is set. The generator takes effect from the next piece
+     * prepared; set it before newGame() for a reproducible game.
+     *
+     * By default each GameCore has its own UniformPieceGenerator with a
+     * random seed. A StreamPieceGenerator feeds the pieces lazily from an
+     * Iterator. Setting a generator discards any non random sequence.
+     *
+     * @param theGenerator the piece generator.
+     */
+    public void setPieceGenerator(final PieceGenerator theGenerator) {
+        if (theGenerator == null) {
+            throw new IllegalArgumentException("theGenerator must not be null");
+        }
+        myGenerator = theGenerator;
+        myNonRandomPieces = null;
+    }
+
+    /**
+     * Sets the listener for game events, replacing any previous listener.
+     *
+     * @param theListener the listener, or null for none.
+     */
+    public void setListener(final GameListener theListener) {
+        myListener = theListener;
+    }
+
+    /**
+     * Returns the listener for game events.
+     *
+     * @return the listener, or null if there is none.
+     */
+    GameListener getListener() {
+        return myListener;
+    }
+
+    /**
+     * Sets the recorder of player actions, replacing any previous recorder.
+     * Replaying the recorded actions on a game with the same board size and
+     * piece generator reproduces the game exactly.
+     *
+     * @param theRecorder the recorder, or null for none.
+     */
+    public void setRecorder(final GameRecorder theRecorder) {
+        myRecorder = theRecorder;
+    }
+
+
+    // public game methods
+
+    /**
+     * Resets the board for a new game.
+     * This method must be called before the first game
+     * and before each new game.
+     */
+    public void newGame() {
+        record(GameAction.NEW_GAME);
+        myTicks = 0;
+        if (myNonRandomPieces != null) {
+            myNonRandomPieces.restart();
+        }
+        Arrays.fill(myRowMasks, 0L);
+        Arrays.fill(myColors, (byte) 0);
+        Arrays.fill(myColumnHeights, 0);
+        Arrays.fill(myColumnBlocks, 0);
+        myHoles = 0;
+        myHash = 0L;
+        myPiecesPlaced = 0;
+        myLinesCleared = 0;
+
+        myGameOver = false;
+        myCurrentPiece = nextMovablePiece(true);
+
+        if (myListener != null) {
+            myListener.boardChanged(new BoardChange(true, myCurrentPiece.getTetrisPiece(),
+                                                    null, myCurrentPiece.getBoardPoints(),
+                                                    null, null, null, null));
+        }
+    }
+
+    /**
+     * Sets a non random sequence of pieces to loop through.
+     * The list is not copied and must not be modified while it is in use;
+     * an empty list returns to the piece generator.
+     *
+     * @param thePieces the List of non random TetrisPieces.
+     */
+    public void setPieceSequence(final List<TetrisPiece> thePieces) {
+        if (thePieces.isEmpty()) {
+            myNonRandomPieces = null;
+        } else {
+            myNonRandomPieces = new SequencePieceGenerator(thePieces);
+        }
+        myCurrentPiece = nextMovablePiece(true);
+    }
+
+    /**
+     * Advances the board by one 'step': moves the current piece down one
+     * line, or freezes it and clears full lines if it cannot move.
+     *
+     * @return true if the piece moved down; false if it froze.
+     */
+    public boolean step() {
+        record(GameAction.STEP);
+        myTicks++;
+        return moveDown();
+    }
+
+    /**
+     * Try to move the movable piece down.
+     * Freeze the Piece in position if down tries to move into an illegal state.
+     * Clear full lines.
+     *
+     * @return true if the piece moved down; false if it froze.
+     */
+    public boolean down() {
+        record(GameAction.DOWN);
+        return moveDown();
+    }
+
+    /**
+     * Try to move the movable piece left.
+     *
+     * @return true if the piece moved.
+     */
+    public boolean left() {
+        record(GameAction.LEFT);
+        return myCurrentPiece != null && moveTo(myCurrentPiece.getRotation(), -1, 0);
+    }
+
+    /**
+     * Try to move the movable piece right.
+     *
+     * @return true if the piece moved.
+     */
+    public boolean right() {
+        record(GameAction.RIGHT);
+        return myCurrentPiece != null && moveTo(myCurrentPiece.getRotation(), 1, 0);
+    }
+
+    /**
+     * Try to rotate the movable piece in the clockwise direction.
+     *
+     * @return true if the piece rotated.
+     */
+    public boolean rotateCW() {
+        record(GameAction.ROTATE_CW);
+        return myCurrentPiece != null && rotate(myCurrentPiece.getRotation().clockwise());
+    }
+
+    /**
+     * Try to rotate the movable piece in the counter-clockwise direction.
+     *
+     * @return true if the piece rotated.
+     */
+    public boolean rotateCCW() {
+        record(GameAction.ROTATE_CCW);
+        return myCurrentPiece != null
+               && rotate(myCurrentPiece.getRotation().counterClockwise());
+    }
+
+    /**
+     * Drop the piece until piece is set.
+     *
+     * The landing row is found first, then the piece is moved, frozen and
+     * reported to the listener in a single change.
+     *
+     * @return true if a piece was dropped; false if the game is over.
+     */
+    public boolean drop() {
+        record(GameAction.DROP);
+        final boolean result = !myGameOver;
+        if (result) {
+            final Point position = myCurrentPiece.getPosition();
+            final int landing = findLandingRow(myCurrentPiece.getShape(),
+                                               position.x(), position.y());
+            Point[] oldPoints = null;
+            if (myListener != null) {
+                oldPoints = myCurrentPiece.getBoardPoints();
+            }
+            if (landing != position.y()) {
+                myCurrentPiece = myCurrentPiece.setPosition(new Point(position.x(), landing));
+            }
+            freeze(oldPoints);
+        }
+        return result;
+    }
+
+    /**
+     * Finds every final placement the current piece can reach by the moves
+     * of the game, including wall kicks, without moving it. Placements
+     * covering the same cells are listed once.
+     *
+     * @return the reachable placements, or an empty list if the game is
+     *         over or has not started.
+     */
+    public List<Placement> getPlacements() {
+        List<Placement> result = Collections.emptyList();
+        if (!myGameOver && myCurrentPiece != null) {
+            if (myPlacementFinder == null) {
+                myPlacementFinder = new PlacementFinder(this);
+            }
+            result = myPlacementFinder.find(myCurrentPiece);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the current piece rests on the floor or on frozen
+     * blocks, so that the next down() or step() freezes it where it is.
+     *
+     * @return true if the current piece has landed; false if it can still
+     *         fall, or if the game is over or has not started.
+     */
+    public boolean isLanded() {
+        boolean result = false;
+        if (!myGameOver && myCurrentPiece != null) {
+            final Point position = myCurrentPiece.getPosition();
+            result = !isPieceLegal(myCurrentPiece.getShape(), position.x(),
+                                   position.y() - 1);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the placement drop() would freeze the current piece at.
+     *
+     * @return the landing placement, or null if the game is over or has
+     *         not started.
+     */
+    public Placement getLandingPlacement() {
+        Placement result = null;
+        if (!myGameOver && myCurrentPiece != null) {
+            final Point position = myCurrentPiece.getPosition();
+            result = new Placement(myCurrentPiece.getTetrisPiece(),
+                                   myCurrentPiece.getRotation(), position.x(),
+                                   findLandingRow(myCurrentPiece.getShape(),
+                                                  position.x(), position.y()));
+        }
+        return result;
+    }
+
+    /**
+     * Moves the current piece straight to a placement and freezes it there,
+     * as a hard drop would. The placement is not checked for reachability;
+     * use one returned by getPlacements().
+     *
+     * @param thePlacement the placement of the current piece.
+     * @return true if the piece was placed; false if the game is over.
+     * @throws IllegalArgumentException if the placement is for another
+     *         piece, or is not a legal resting position.
+     */
+    public boolean place(final Placement thePlacement) {
+        final boolean result = !myGameOver;
+        if (result) {
+            final PieceShape shape = thePlacement.getShape();
+            final int x = thePlacement.getX();
+            final int y = thePlacement.getY();
+            if (thePlacement.getTetrisPiece() != myCurrentPiece.getTetrisPiece()
+                || !isPieceLegal(shape, x, y) || isPieceLegal(shape, x, y - 1)) {
+                throw new IllegalArgumentException("Not a placement of the current piece: "
+                                                   + thePlacement);
+            }
+            if (myRecorder != null) {
+                myRecorder.piecePlaced(myTicks, thePlacement);
+            }
+            Point[] oldPoints = null;
+            if (myListener != null) {
+                oldPoints = myCurrentPiece.getBoardPoints();
+            }
+            myCurrentPiece = new MovableTetrisPiece(thePlacement.getTetrisPiece(),
+                                                    new Point(x, y),
+                                                    thePlacement.getRotation());
+            freeze(oldPoints);
+        }
+        return result;
+    }
+
+    /**
+     * Saves the complete state of the game into a new Snapshot.
+     *
+     * @return a snapshot of the game.
+     */
+    public Snapshot snapshot() {
+        final Snapshot result = new Snapshot(myWidth, myHeight);
+        snapshot(result);
+        return result;
+    }
+
+    /**
+     * Saves the complete state of the game into an existing Snapshot,
+     * overwriting it. Search code can reuse one Snapshot per level to try
+     * moves and restore() them without allocating boards.
+     *
+     * The cost is proportional to the number of rows; the current and
+     * next pieces are immutable and shared, and only the position of the
+     * piece generator is copied.
+     *
+     * @param theTarget the snapshot to overwrite.
+     * @throws IllegalArgumentException if the snapshot is for a board of
+     *         a different size.
+     */
+    public void snapshot(final Snapshot theTarget) {
+        checkSize(theTarget);
+        System.arraycopy(myRowMasks, 0, theTarget.myRowMasks, 0, myHeight);
+        System.arraycopy(myColors, 0, theTarget.myColors, 0, myColors.length);
+        System.arraycopy(myColumnHeights, 0, theTarget.myColumnHeights, 0, myWidth);
+        System.arraycopy(myColumnBlocks, 0, theTarget.myColumnBlocks, 0, myWidth);
+        theTarget.myHoles = myHoles;
+        theTarget.myHash = myHash;
+        theTarget.myGameOver = myGameOver;
+        theTarget.myGenerator = myGenerator.copy();
+        theTarget.myNonRandomPieces = null;
+        if (myNonRandomPieces != null) {
+            theTarget.myNonRandomPieces = myNonRandomPieces.copy();
+        }
+        theTarget.myNextPiece = myNextPiece;
+        theTarget.myCurrentPiece = myCurrentPiece;
+        theTarget.myPiecesPlaced = myPiecesPlaced;
+        theTarget.myLinesCleared = myLinesCleared;
+        theTarget.myTicks = myTicks;
+    }
+
+    /**
+     * Restores the game to a saved state. The snapshot is not changed and
+     * may be restored any number of times.
+     *
+     * The listener receives a reset BoardChange, after which it should
+     * reload the frozen blocks, and the restored next piece.
+     * Restoring is not reported to the recorder, so a recorded game that
+     * is restored can no longer be replayed.
+     *
+     * @param theSnapshot the snapshot to restore.
+     * @throws IllegalArgumentException if the snapshot is for a board of
+     *         a different size.
+     */
+    public void restore(final Snapshot theSnapshot) {
+        checkSize(theSnapshot);
+        System.arraycopy(theSnapshot.myRowMasks, 0, myRowMasks, 0, myHeight);
+        System.arraycopy(theSnapshot.myColors, 0, myColors, 0, myColors.length);
+        System.arraycopy(theSnapshot.myColumnHeights, 0, myColumnHeights, 0, myWidth);
+        System.arraycopy(theSnapshot.myColumnBlocks, 0, myColumnBlocks, 0, myWidth);
+        myHoles = theSnapshot.myHoles;
+        myHash = theSnapshot.myHash;
+        myGameOver = theSnapshot.myGameOver;
+        myGenerator = theSnapshot.myGenerator.copy();
+        myNonRandomPieces = null;
+        if (theSnapshot.myNonRandomPieces != null) {
+            myNonRandomPieces = theSnapshot.myNonRandomPieces.copy();
+        }
+        myNextPiece = theSnapshot.myNextPiece;
+        myCurrentPiece = theSnapshot.myCurrentPiece;
+        myPiecesPlaced = theSnapshot.myPiecesPlaced;
+        myLinesCleared = theSnapshot.myLinesCleared;
+        myTicks = theSnapshot.myTicks;
+
+        if (myListener != null && myCurrentPiece != null) {
+            myListener.boardChanged(new BoardChange(true, myCurrentPiece.getTetrisPiece(),
+                                                    null, myCurrentPiece.getBoardPoints(),
+                                                    null, null, null, null));
+            myListener.nextPieceChanged(myNextPiece);
+        }
+    }
+
+
+    // package-private state access for SaveFormat
+
+    /**
+     * Get the piece generator used when no non random sequence is set.
+     *
+     * @return the piece generator.
+     */
+    PieceGenerator getPieceGenerator() {
+        return myGenerator;
+    }
+
+    /**
+     * Get the non random piece sequence.
+     *
+     * @return the sequence, or null if none is set.
+     */
+    SequencePieceGenerator getPieceSequence() {
+        return myNonRandomPieces;
+    }
+
+    /**
+     * Replaces the frozen blocks and recomputes the column heights, holes
+     * and hash from them. The listener is not notified.
+     *
+     * @param theRowMasks the occupancy mask of each row.
+     * @param theColors the palette index of each cell, row by row.
+     */
+    void loadCells(final long[] theRowMasks, final byte[] theColors) {
+        System.arraycopy(theRowMasks, 0, myRowMasks, 0, myHeight);
+        System.arraycopy(theColors, 0, myColors, 0, myColors.length);
+        Arrays.fill(myColumnHeights, 0);
+        Arrays.fill(myColumnBlocks, 0);
+        myHoles = 0;
+        for (int y = 0; y < myHeight; y++) {
+            for (long mask = myRowMasks[y]; mask != 0L; mask &= mask - 1) {
+                addBlockToColumn(Long.numberOfTrailingZeros(mask), y);
+            }
+        }
+        myHash = hashRows(0, myHeight);
+    }
+
+    /**
+     * Replaces the pieces and where they come from. The listener is not
+     * notified.
+     *
+     * @param theCurrentPiece the current piece, or null.
+     * @param theNextPiece the next piece, or null.
+     * @param theGenerator the piece generator.
+     * @param theSequence the non random piece sequence, or null.
+     */
+    void loadPieces(final MovableTetrisPiece theCurrentPiece, final TetrisPiece theNextPiece,
+                    final PieceGenerator theGenerator,
+                    final SequencePieceGenerator theSequence) {
+        myCurrentPiece = theCurrentPiece;
+        myNextPiece = theNextPiece;
+        myGenerator = theGenerator;
+        myNonRandomPieces = theSequence;
+    }
+
+    /**
+     * Replaces the game over state and the counters. The listener is not
+     * notified.
+     *
+     * @param theGameOver the game over state.
+     * @param thePiecesPlaced the number of pieces frozen.
+     * @param theLinesCleared the number of rows cleared.
+     * @param theTicks the number of steps.
+     */
+    void loadProgress(final boolean theGameOver, final int thePiecesPlaced,
+                      final int theLinesCleared, final long theTicks) {
+        myGameOver = theGameOver;
+        myPiecesPlaced = thePiecesPlaced;
+        myLinesCleared = theLinesCleared;
+        myTicks = theTicks;
+    }
+
+    @Override
+    public String toString() {
+        final char[][] board = new char[myHeight + HEADROOM][myWidth];
+        for (int y = 0; y < board.length; y++) {
+            for (int x = 0; x < myWidth; x++) {
+                if (y < myHeight && (myRowMasks[y] & 1L << x) != 0L) {
+                    board[y][x] = '*';
+                } else {
+                    board[y][x] = ' ';
+                }
+            }
+        }
+        if (myCurrentPiece != null) {
+            for (final Point p : myCurrentPiece.getBoardPoints()) {
+                if (p.y() < board.length) {
+                    board[p.y()][p.x()] = '*';
+                }
+            }
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (int i = board.length - 1; i >= 0; i--) {
+            sb.append('|').append(board[i]).append("|\n");
+            if (i == myHeight) {
+                sb.append(' ');
+                for (int j = 0; j < myWidth; j++) {
+                    sb.append('-');
+                }
+                sb.append('\n');
+            }
+        }
+        sb.append('|');
+        for (int w = 0; w < myWidth; w++) {
+            sb.append('-');
+        }
+        sb.append('|');
+        return sb.toString();
+    }
+
+
+    // private helper methods
+
+    /**
+     * Moves the current piece down, freezing it if it cannot move.
+     *
+     * @return true if the piece moved down; false if it froze.
+     */
+    private boolean moveDown() {
+        final boolean result = moveTo(myCurrentPiece.getRotation(), 0, -1);
+        if (!result) {
+            freeze(null);
+        }
+        return result;
+    }
+
+    /**
+     * Helper function to freeze the current piece where it is, clear
+     * complete lines, update the current piece and notify the listener.
+     *
+     * @param theOldPoints the points of the current piece as the listener
+     *        last saw it, or null if they are the current points.
+     */
+    private void freeze(final Point[] theOldPoints) {
+        final MovableTetrisPiece frozen = myCurrentPiece;
+        final int[] frozenRows = addPieceToBoardData(frozen);
+        final int[] clearedRows = checkRows(frozenRows);
+        myPiecesPlaced++;
+        if (!myGameOver) {
+            myCurrentPiece = nextMovablePiece(false);
+        }
+        if (myListener != null) {
+            final Point[] frozenPoints = frozen.getBoardPoints();
+            Point[] oldPoints = theOldPoints;
+            if (oldPoints == null) {
+                oldPoints = frozenPoints;
+            }
+            myListener.boardChanged(new BoardChange(false, myCurrentPiece.getTetrisPiece(),
+                                                    oldPoints,
+                                                    myCurrentPiece.getBoardPoints(),
+                                                    frozen.getTetrisPiece(), frozenPoints,
+                                                    frozenRows, clearedRows));
+        }
+    }
+
+    /**
+     * Helper function to find the lowest row a shape can fall to from
+     * its current row without passing through frozen blocks.
+     *
+     * When every column of the shape is above the top of the matching
+     * board column, the landing row follows directly from the column
+     * heights. Otherwise the shape is under an overhang and the rows
+     * below it are tested one at a time.
+     *
+     * @param theShape the rotated shape of the piece.
+     * @param theX the board column of the piece position.
+     * @param theY the current board row of the piece position.
+     * @return the board row of the piece position once it has landed.
+     */
+    private int findLandingRow(final PieceShape theShape, final int theX, final int theY) {
+        int landing = Integer.MIN_VALUE;
+        for (int c = theShape.getMinX(); c <= theShape.getMaxX(); c++) {
+            final int height = myColumnHeights[theX + c];
+            if (theY + theShape.getColumnBottom(c) < height) {
+                landing = Integer.MAX_VALUE;
+                break;
+            }
+            landing = Math.max(landing, height - theShape.getColumnBottom(c));
+        }
+        if (landing == Integer.MAX_VALUE) {
+            landing = theY;
+            while (isPieceLegal(theShape, theX, landing - 1)) {
+                landing--;
+            }
+        }
+        return landing;
+    }
+
+    /**
+     * Helper function to rotate the current piece, trying each wall kick
+     * offset in turn until one of them produces a legal position.
+     *
+     * @param theRotation the rotation to attempt.
+     * @return true if the piece rotated.
+     */
+    private boolean rotate(final Rotation theRotation) {
+        boolean result = false;
+        if (myCurrentPiece.getTetrisPiece() == TetrisPiece.O) {
+            result = moveTo(theRotation, 0, 0);
+        } else {
+            final Point[] offsets = WallKick.getWallKicks(myCurrentPiece.getTetrisPiece(),
+                                                          myCurrentPiece.getRotation(),
+                                                          theRotation);
+            for (final Point p : offsets) {
+                if (moveTo(theRotation, p.x(), p.y())) {
+                    result = true;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Helper function to check if the current piece can be shifted to the
+     * specified rotation and offset. The legality test works on the
+     * precomputed shape, so a new piece is only created when the move succeeds.
+     *
+     * @param theRotation the rotation to attempt.
+     * @param theDx the horizontal offset to attempt.
+     * @param theDy the vertical offset to attempt.
+     * @return True if the move succeeded
+     */
+    private boolean moveTo(final Rotation theRotation, final int theDx, final int theDy) {
+        final Point position = myCurrentPiece.getPosition();
+        final TetrisPiece piece = myCurrentPiece.getTetrisPiece();
+        final boolean result = isPieceLegal(PieceShape.of(piece, theRotation),
+                                            position.x() + theDx, position.y() + theDy);
+        if (result) {
+            final MovableTetrisPiece old = myCurrentPiece;
+            myCurrentPiece = new MovableTetrisPiece(piece,
+                                                    position.transform(theDx, theDy),
+                                                    theRotation);
+            if (myListener != null) {
+                myListener.boardChanged(new BoardChange(false, piece, old.getBoardPoints(),
+                                                        myCurrentPiece.getBoardPoints(),
+                                                        null, null, null, null));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Helper function to test if a piece is in a legal state.
+     *
+     * Illegal states:
+     * - points of the piece exceed the bounds of the board
+     * - points of the piece collide with frozen blocks on the board
+     *
+     * Package-private so the PlacementFinder can test states directly.
+     *
+     * @param theShape the rotated shape of the piece.
+     * @param theX the board column of the piece position.
+     * @param theY the board row of the piece position.
+     * @return Returns true if the piece is in a legal state; false otherwise
+     */
+    boolean isPieceLegal(final PieceShape theShape, final int theX, final int theY) {
+        return theX + theShape.getMinX() >= 0
+               && theX + theShape.getMaxX() < myWidth
+               && theY + theShape.getMinY() >= 0
+               && !collision(theShape, theX, theY);
+    }
+
+    /**
+     * Helper function to determine of a movable block has collided with set
+     * blocks. Each row of the shape is tested against the frozen row mask
+     * with a single AND.
+     *
+     * @param theShape the rotated shape to test for collision.
+     * @param theX the board column of the shape position.
+     * @param theY the board row of the shape position.
+     * @return Returns true if any of the blocks has collided with a set board
+     *         block.
+     */
+    private boolean collision(final PieceShape theShape, final int theX, final int theY) {
+        long hits = 0L;
+        final int top = Math.min(theShape.getMaxY(), myHeight - 1 - theY);
+        for (int r = theShape.getMinY(); r <= top; r++) {
+            hits |= myRowMasks[theY + r] & theShape.getRowMask(r, theX);
+        }
+        return hits != 0L;
+    }
+
+    /**
+     * Freezes a movable Tetris piece into the frozen blocks of the board.
+     *
+     * Each row of the shape is OR'ed into the row occupancy masks and each
+     * block sets its cell in the color plane. A block above the top of the
+     * board ends the game.
+     *
+     * @param thePiece Piece to freeze on the board.
+     * @return the rows of the board the piece was set into, in ascending order.
+     */
+    private int[] addPieceToBoardData(final MovableTetrisPiece thePiece) {
+        final PieceShape shape = thePiece.getShape();
+        final int x = thePiece.getPosition().x();
+        final int y = thePiece.getPosition().y();
+        final byte color = (byte) thePiece.getTetrisPiece().getPaletteIndex();
+        for (int i = 0; i < shape.size(); i++) {
+            final int row = y + shape.getY(i);
+            if (row < myHeight) {
+                final int column = x + shape.getX(i);
+                myColors[row * myWidth + column] = color;
+                if ((myRowMasks[row] & 1L << column) == 0L) {
+                    addBlockToColumn(column, row);
+                    myHash ^= myCellKeys[row * myWidth + column];
+                }
+            } else if (!myGameOver) {
+                myGameOver = true;
+                if (myListener != null) {
+                    myListener.gameOver();
+                }
+            }
+        }
+        final int top = Math.min(y + shape.getMaxY(), myHeight - 1);
+        final int[] rows = new int[Math.max(0, top - y - shape.getMinY() + 1)];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = y + shape.getMinY() + i;
+            myRowMasks[rows[i]] |= shape.getRowMask(rows[i] - y, x);
+        }
+        return rows;
+    }
+
+    /**
+     * Updates the column statistics for a block frozen into a column.
+     *
+     * The holes in a column are the cells below its height that hold no
+     * block, so the hole count changes by the change in height minus one.
+     *
+     * @param theColumn the column of the block.
+     * @param theRow the row of the block.
+     */
+    private void addBlockToColumn(final int theColumn, final int theRow) {
+        final int height = Math.max(myColumnHeights[theColumn], theRow + 1);
+        myHoles += height - myColumnHeights[theColumn] - 1;
+        myColumnHeights[theColumn] = height;
+        myColumnBlocks[theColumn]++;
+    }
+
+    /**
+     * Checks the board for complete rows.
+     *
+     * Only the rows spanned by the piece that just froze can have become
+     * complete, so only those rows are tested.
+     *
+     * @param theRows the rows the frozen piece was set into, in ascending order.
+     * @return the complete rows that were removed, or null if there were none.
+     */
+    private int[] checkRows(final int[] theRows) {
+        int count = 0;
+        for (final int y : theRows) {
+            if (myRowMasks[y] == myFullRow) {
+                myCompleteRows[count] = y;
+                count++;
+            }
+        }
+        int[] result = null;
+        if (count > 0) {
+            removeRows(count);
+            myLinesCleared += count;
+            result = Arrays.copyOf(myCompleteRows, count);
+            if (myListener != null) {
+                myListener.rowsCleared(result.clone());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the complete rows recorded in myCompleteRows in a single
+     * in-place compaction pass. Each run of rows between two complete rows
+     * is shifted down with one array copy, and the vacated rows at the top
+     * of the board are cleared.
+     *
+     * The rows from the lowest removed row up to the top of the stack
+     * change, so their part of the hash is taken out before the pass and
+     * put back after it.
+     *
+     * @param theCount the number of complete rows recorded.
+     */
+    private void removeRows(final int theCount) {
+        final int bottom = myCompleteRows[0];
+        int top = 0;
+        for (final int height : myColumnHeights) {
+            top = Math.max(top, height);
+        }
+        myHash ^= hashRows(bottom, top);
+        for (int i = 0; i < theCount; i++) {
+            final int from = myCompleteRows[i] + 1;
+            int to = myHeight;
+            if (i + 1 < theCount) {
+                to = myCompleteRows[i + 1];
+            }
+            final int shift = i + 1;
+            System.arraycopy(myRowMasks, from, myRowMasks, from - shift, to - from);
+            System.arraycopy(myColors, from * myWidth, myColors, (from - shift) * myWidth,
+                             (to - from) * myWidth);
+        }
+        Arrays.fill(myRowMasks, myHeight - theCount, myHeight, 0L);
+        Arrays.fill(myColors, (myHeight - theCount) * myWidth, myHeight * myWidth, (byte) 0);
+        myHash ^= hashRows(bottom, top - theCount);
+        removeRowsFromColumns(theCount);
+    }
+
+    /**
+     * Computes the part of the hash contributed by a range of rows.
+     *
+     * @param theFrom the lowest row, inclusive.
+     * @param theTo the highest row, exclusive.
+     * @return the exclusive or of the keys of the occupied cells.
+     */
+    private long hashRows(final int theFrom, final int theTo) {
+        long result = 0L;
+        for (int y = theFrom; y < theTo; y++) {
+            result ^= Zobrist.rowHash(myCellKeys, myWidth, y, myRowMasks[y]);
+        }
+        return result;
+    }
+
+    /**
+     * Updates the column statistics after complete rows were removed.
+     *
+     * Every removed row was complete, so each column loses one block per
+     * removed row and every removed row was below the column's top. The
+     * height therefore drops by at least the number of removed rows, and
+     * further only while the new top cell is empty.
+     *
+     * @param theCount the number of rows removed.
+     */
+    private void removeRowsFromColumns(final int theCount) {
+        myHoles = 0;
+        for (int x = 0; x < myWidth; x++) {
+            int height = myColumnHeights[x] - theCount;
+            while (height > 0 && (myRowMasks[height - 1] & 1L << x) == 0L) {
+                height--;
+            }
+            myColumnHeights[x] = height;
+            myColumnBlocks[x] -= theCount;
+            myHoles += height - myColumnBlocks[x];
+        }
+    }
+
+    /**
+     * Gets the next MovableTetrisPiece.
+     *
+     * @param theRestart Restart the non random cycle.
+     * @return A new MovableTetrisPiece.
+     */
+    private MovableTetrisPiece nextMovablePiece(final boolean theRestart) {
+
+        if (myNextPiece == null || theRestart) {
+            prepareNextMovablePiece();
+        }
+
+        final TetrisPiece next = myNextPiece;
+
+        int startY = myHeight - 1;
+        if (myNextPiece == TetrisPiece.I) {
+            startY--;
+        }
+
+        prepareNextMovablePiece();
+        return new MovableTetrisPiece(
+                       next,
+                       new Point((myWidth - myNextPiece.getWidth()) / 2, startY));
+    }
+
+    /**
+     * Reports an action to the recorder, if there is one.
+     *
+     * @param theAction the action about to be performed.
+     */
+    private void record(final GameAction theAction) {
+        if (myRecorder != null) {
+            myRecorder.actionPerformed(myTicks, theAction);
+        }
+    }
+
+    /**
+     * Checks that a snapshot is for a board of the same size as this one.
+     *
+     * @param theSnapshot the snapshot.
+     * @throws IllegalArgumentException if the sizes differ.
+     */
+    private void checkSize(final Snapshot theSnapshot) {
+        if (theSnapshot.myWidth != myWidth || theSnapshot.myHeight != myHeight) {
+            throw new IllegalArgumentException("Snapshot is for a "
+                                               + theSnapshot.myWidth + " x "
+                                               + theSnapshot.myHeight + " board");
+        }
+    }
+
+    /**
+     * Prepares the Next movable piece for preview.
+     */
+    private void prepareNextMovablePiece() {
+
+        final boolean share = myNextPiece != null;
+        if (myNonRandomPieces == null) {
+            myNextPiece = myGenerator.next();
+        } else {
+            myNextPiece = myNonRandomPieces.next();
+        }
+        if (share && !myGameOver && myListener != null) {
+            myListener.nextPieceChanged(myNextPiece);
+        }
+    }
+
+
+    // Inner classes
+
+    /**
+     * The complete state of a game at one moment, taken by snapshot() and
+     * put back by restore(). A Snapshot can only be restored into a game
+     * with a board of the same size.
+     */
+    public static final class Snapshot {
+
+        /**
+         * Width of the board.
+         */
+        private final int myWidth;
+
+        /**
+         * Height of the board.
+         */
+        private final int myHeight;
+
+        /**
+         * The occupancy mask of each row.
+         */
+        private final long[] myRowMasks;
+
+        /**
+         * The palette index of each cell.
+         */
+        private final byte[] myColors;
+
+        /**
+         * The height of each column.
+         */
+        private final int[] myColumnHeights;
+
+        /**
+         * The number of frozen blocks in each column.
+         */
+        private final int[] myColumnBlocks;
+
+        /**
+         * The number of holes.
+         */
+        private int myHoles;
+
+        /**
+         * The hash of the frozen blocks.
+         */
+        private long myHash;
+
+        /**
+         * The game over state.
+         */
+        private boolean myGameOver;
+
+        /**
+         * A copy of the piece generator.
+         */
+        private PieceGenerator myGenerator;
+
+        /**
+         * A copy of the non random piece sequence, or null.
+         */
+        private SequencePieceGenerator myNonRandomPieces;
+
+        /**
+         * The next piece.
+         */
+        private TetrisPiece myNextPiece;
+
+        /**
+         * The current piece.
+         */
+        private MovableTetrisPiece myCurrentPiece;
+
+        /**
+         * The number of pieces frozen since the game started.
+         */
+        private int myPiecesPlaced;
+
+        /**
+         * The number of rows cleared since the game started.
+         */
+        private int myLinesCleared;
+
+        /**
+         * The number of steps since the game started.
+         */
+        private long myTicks;
+
+        /**
+         * Constructs an empty snapshot for a board size.
+         *
+         * @param theWidth Width of the board.
+         * @param theHeight Height of the board.
+         */
+        private Snapshot(final int theWidth, final int theHeight) {
+            myWidth = theWidth;
+            myHeight = theHeight;
+            myRowMasks = new long[theHeight];
+            myColors = new byte[theWidth * theHeight];
+            myColumnHeights = new int[theWidth];
+            myColumnBlocks = new int[theWidth];
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+/**
+ * Receives the events of a GameCore.
+ *
+ * A GameCore calls its listener synchronously on the thread that drives
+ * the game, in the same order the events happen. A GameCore without a
+ * listener skips building the events altogether.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public interface GameListener {
+
+    /**
+     * Called once when a frozen block is set above the top of the board.
+     */
+    void gameOver();
+
+    /**
+     * Called when complete rows have been removed from the board.
+     *
+     * @param theRows the removed rows in ascending order, numbered as they
+     *        were before the removal.
+     */
+    void rowsCleared(int[] theRows);
+
+    /**
+     * Called when a new piece has been chosen as the next piece to play.
+     *
+     * @param thePiece the next piece.
+     */
+    void nextPieceChanged(TetrisPiece thePiece);
+
+    /**
+     * Called after each change to the current piece or the frozen blocks.
+     *
+     * @param theChange what changed.
+     */
+    void boardChanged(BoardChange theChange);
+}
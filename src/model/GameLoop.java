@@ -0,0 +1,266 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Runs a game on its own thread at a fixed timestep.
+ *
+ * The loop advances the game in ticks of TICK_NANOS, scheduled against
+ * System.nanoTime() rather than by a timer, so ticks are neither lost nor
+ * bunched up when other threads are busy. Each tick applies the player
+ * actions queued by perform() since the last tick and then, unless the
+ * loop is paused, counts towards the next step of gravity. If the thread
+ * falls behind, for example after a long garbage collection, it runs at
+ * most MAX_CATCH_UP_TICKS ticks back to back and then continues from the
+ * current time.
+ *
+ * After any tick that changed the game, the loop publishes a BoardState
+ * to its consumer. The consumer is called on the loop thread and must not
+ * block; a renderer keeps the latest state and paints it on its own
+ * thread, so a slow paint never holds up the game.
+ *
+ * The loop becomes the listener of its game, which it needs to know when
+ * the game changes, so the game must not already have a listener; use the
+ * consumer to follow the game instead. The game belongs to the loop once
+ * it has started and must not be used by other threads. The other methods
+ * of a GameLoop may be called from any thread.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class GameLoop {
+
+    /**
+     * The number of ticks in a second.
+     */
+    public static final int TICKS_PER_SECOND = 60;
+
+    /**
+     * The length of a tick in nanoseconds.
+     */
+    public static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1) / TICKS_PER_SECOND;
+
+    /**
+     * The most ticks run back to back when the loop has fallen behind.
+     */
+    private static final int MAX_CATCH_UP_TICKS = 10;
+
+    /**
+     * The game.
+     */
+    private final GameCore myGame;
+
+    /**
+     * Receives the state of the game after every tick that changed it.
+     */
+    private final Consumer<? super BoardState> myConsumer;
+
+    /**
+     * The player actions waiting for the next tick.
+     */
+    private final Queue<GameAction> myActions;
+
+    /**
+     * The thread running the loop.
+     */
+    private final Thread myThread;
+
+    /**
+     * Whether the loop should keep running.
+     */
+    private volatile boolean myRunning;
+
+    /**
+     * Whether gravity is suspended.
+     */
+    private volatile boolean myPaused;
+
+    /**
+     * The number of ticks between steps of gravity.
+     */
+    private volatile int myGravityTicks;
+
+    /**
+     * The ticks counted towards the next step of gravity.
+     */
+    private int myGravityCount;
+
+    /**
+     * Whether the game changed since the last state was published.
+     */
+    private boolean myChanged;
+
+    /**
+     * Constructs a paused loop with one step of gravity a second.
+     *
+     * @param theGame the game to run; the loop becomes its listener.
+     * @param theConsumer receives the state of the game after every tick
+     *        that changed it, on the loop thread.
+     * @throws IllegalArgumentException if the game already has a listener.
+     */
+    public GameLoop(final GameCore theGame, final Consumer<? super BoardState> theConsumer) {
+        if (theGame.getListener() != null) {
+            throw new IllegalArgumentException("The game already has a listener");
+        }
+        myGame = theGame;
+        myConsumer = theConsumer;
+        myActions = new ConcurrentLinkedQueue<GameAction>();
+        myThread = new Thread(this::run, "Game loop");
+        myThread.setDaemon(true);
+        myPaused = true;
+        myGravityTicks = TICKS_PER_SECOND;
+        myChanged = true;
+        theGame.setListener(new ChangeListener());
+    }
+
+    /**
+     * Starts the loop thread. The current state of the game is published
+     * on the first tick.
+     *
+     * @throws IllegalThreadStateException if the loop was already started.
+     */
+    public void start() {
+        myRunning = true;
+        myThread.start();
+    }
+
+    /**
+     * Stops the loop thread after the tick in progress.
+     */
+    public void stop() {
+        myRunning = false;
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Queues a player action for the next tick. Actions other than
+     * NEW_GAME are ignored before the first game and once the game is over.
+     *
+     * @param theAction the action.
+     */
+    public void perform(final GameAction theAction) {
+        myActions.add(theAction);
+    }
+
+    /**
+     * Suspends or resumes gravity. Queued actions are still applied while
+     * the loop is paused.
+     *
+     * @param thePaused true to suspend gravity, false to resume it.
+     */
+    public void setPaused(final boolean thePaused) {
+        myPaused = thePaused;
+    }
+
+    /**
+     * Returns whether gravity is suspended.
+     *
+     * @return true if the loop is paused.
+     */
+    public boolean isPaused() {
+        return myPaused;
+    }
+
+    /**
+     * Sets the time between steps of gravity. The time is rounded to a
+     * whole number of ticks, at least one.
+     *
+     * @param theDelay the time between steps.
+     * @param theUnit the unit of theDelay.
+     */
+    public void setGravityDelay(final long theDelay, final TimeUnit theUnit) {
+        final long ticks = (theUnit.toNanos(theDelay) + TICK_NANOS / 2) / TICK_NANOS;
+        myGravityTicks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, ticks));
+    }
+
+    /**
+     * Runs ticks on schedule until the loop is stopped.
+     */
+    private void run() {
+        long next = System.nanoTime();
+        while (myRunning) {
+            int ticks = 0;
+            while (ticks < MAX_CATCH_UP_TICKS && System.nanoTime() - next >= 0) {
+                tick();
+                next += TICK_NANOS;
+                ticks++;
+            }
+            if (System.nanoTime() - next >= 0) {
+                next = System.nanoTime();
+            }
+            if (myChanged) {
+                myChanged = false;
+                myConsumer.accept(new BoardState(myGame));
+            }
+            LockSupport.parkNanos(this, next - System.nanoTime());
+        }
+    }
+
+    /**
+     * Advances the game by one tick: applies the queued actions, then
+     * steps gravity if it is due.
+     */
+    private void tick() {
+        for (GameAction action = myActions.poll(); action != null;
+             action = myActions.poll()) {
+            if (action == GameAction.NEW_GAME) {
+                myGame.newGame();
+                myGravityCount = 0;
+            } else if (isPlaying()) {
+                action.apply(myGame);
+            }
+        }
+        if (!myPaused && isPlaying()) {
+            myGravityCount++;
+            if (myGravityCount >= myGravityTicks) {
+                myGravityCount = 0;
+                myGame.step();
+            }
+        }
+    }
+
+    /**
+     * Returns whether a game is in progress.
+     *
+     * @return true if a game has started and is not over.
+     */
+    private boolean isPlaying() {
+        return myGame.getCurrentPiece() != null && !myGame.isGameOver();
+    }
+
+    /**
+     * Notes every change to the game so the next state is published.
+     */
+    private final class ChangeListener implements GameListener {
+
+        @Override
+        public void gameOver() {
+            myChanged = true;
+        }
+
+        @Override
+        public void rowsCleared(final int[] theRows) {
+            myChanged = true;
+        }
+
+        @Override
+        public void nextPieceChanged(final TetrisPiece thePiece) {
+            myChanged = true;
+        }
+
+        @Override
+        public void boardChanged(final BoardChange theChange) {
+            myChanged = true;
+        }
+    }
+}
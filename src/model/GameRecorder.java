@@ -0,0 +1,40 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+/**
+ * Receives the player actions of a GameCore, for example to record a
+ * replay.
+ *
+ * A GameCore calls its recorder synchronously, before performing each
+ * action, on the thread that drives the game. Implementations must be
+ * quick; a recorder that writes to disk should buffer.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public interface GameRecorder {
+
+    /**
+     * Called before an action is performed.
+     *
+     * @param theTick the tick of the game: the number of steps since the
+     *        game started, or since the previous game for NEW_GAME.
+     * @param theAction the action.
+     */
+    void actionPerformed(long theTick, GameAction theAction);
+
+    /**
+     * Called before the current piece is moved straight to a placement,
+     * once the placement has been checked. Placements that are rejected,
+     * or made after the game is over, are not recorded.
+     *
+     * @param theTick the tick of the game.
+     * @param thePlacement the placement.
+     */
+    void piecePlaced(long theTick, Placement thePlacement);
+}
@@ -137,6 +137,15 @@ public final class MovableTetrisPiece {
     protected Point[] getBoardPoints() {
         return getPoints(myPosition);
     }
+
+    /**
+     * Gets the precomputed shape of the TetrisPiece in its current rotation.
+     * 
+     * @return the rotated shape.
+     */
+    PieceShape getShape() {
+        return PieceShape.of(myTetrisPiece, myRotation);
+    }
     
     
     
@@ -223,38 +232,7 @@ public final class MovableTetrisPiece {
      * @return array of TetrisPiece block points.
      */
     private Point[] getPoints(final Point thePoint) {
-
-        final Point[] blocks = myTetrisPiece.getPoints();
-        
-        for (int i = 0; i < blocks.length; i++) {
-            final Point block = blocks[i];
-            if (myTetrisPiece != TetrisPiece.O) {
-                switch (myRotation) {
-                    case QUARTER:
-                        blocks[i] = new Point(block.y(),
-                                              myTetrisPiece.getWidth() - block.x() - 1);
-                        
-                        break;
-                    case HALF:
-                        blocks[i] = new Point(myTetrisPiece.getWidth() - block.x() - 1,
-                                              myTetrisPiece.getWidth() - block.y() - 1);
-                        
-                        break;
-                    case THREEQUARTER:                 
-                        blocks[i] = new Point(myTetrisPiece.getWidth() - block.y() - 1,
-                                              block.x());
-                        
-                        
-                        break;
-                    default:
-                }
-            }
-            if (thePoint != null) {
-                blocks[i] = blocks[i].transform(thePoint);
-            }
-        }
-
-        return blocks;
+        return getShape().getPoints(thePoint);
     }
     
     /**
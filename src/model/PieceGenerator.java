@@ -0,0 +1,36 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+/**
+ * Chooses the sequence of TetrisPieces for a game.
+ *
+ * Each GameCore owns its own generator, so games running in parallel never
+ * share random state, and a game started with a seeded generator always
+ * deals the same pieces.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public interface PieceGenerator {
+
+    /**
+     * Returns the next piece of the sequence.
+     *
+     * @return the next TetrisPiece.
+     */
+    TetrisPiece next();
+
+    /**
+     * Returns an independent generator in the same state as this one: both
+     * deal the same pieces from here on, and advancing one does not affect
+     * the other. Used to snapshot a game.
+     *
+     * @return a copy of this generator.
+     */
+    PieceGenerator copy();
+}
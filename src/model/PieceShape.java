@@ -0,0 +1,324 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The precomputed blocks of one TetrisPiece in one Rotation.
+ *
+ * All 7 x 4 shapes are built once when the class is initialized, so the
+ * Board can test and freeze pieces without allocating Points.
+ * Each shape is stored both as the local offsets of its blocks and as one
+ * occupancy bit mask per local row (bit x is set when the block (x, row)
+ * is present).
+ *
+ * A PieceShape is immutable.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+final class PieceShape {
+
+    /**
+     * The number of local rows (and columns) spanned by any shape.
+     */
+    private static final int SIZE = 4;
+
+    /**
+     * The shapes indexed by TetrisPiece ordinal and Rotation ordinal.
+     */
+    private static final PieceShape[][] SHAPES = createShapes();
+
+    /**
+     * The local x offsets of the blocks.
+     */
+    private final int[] myXs;
+
+    /**
+     * The local y offsets of the blocks.
+     */
+    private final int[] myYs;
+
+    /**
+     * The occupancy mask of each local row.
+     */
+    private final long[] myRowMasks;
+
+    /**
+     * The lowest local y offset of a block in each local column,
+     * or -1 for a column without blocks.
+     */
+    private final int[] myColumnBottoms;
+
+    /**
+     * The smallest local x offset of any block.
+     */
+    private final int myMinX;
+
+    /**
+     * The largest local x offset of any block.
+     */
+    private final int myMaxX;
+
+    /**
+     * The smallest local y offset of any block.
+     */
+    private final int myMinY;
+
+    /**
+     * The largest local y offset of any block.
+     */
+    private final int myMaxY;
+
+    /**
+     * The ordinal of the first Rotation of the same TetrisPiece whose shape
+     * covers the same cells up to translation.
+     */
+    private int myCanonical;
+
+    /**
+     * Constructs a shape from the rotated local points of a TetrisPiece.
+     *
+     * @param thePoints the local points of the blocks.
+     */
+    private PieceShape(final Point... thePoints) {
+        myXs = new int[thePoints.length];
+        myYs = new int[thePoints.length];
+        myRowMasks = new long[SIZE];
+        myColumnBottoms = new int[SIZE];
+        Arrays.fill(myColumnBottoms, -1);
+        int minX = SIZE;
+        int maxX = -1;
+        int minY = SIZE;
+        int maxY = -1;
+        for (int i = 0; i < thePoints.length; i++) {
+            myXs[i] = thePoints[i].x();
+            myYs[i] = thePoints[i].y();
+            myRowMasks[myYs[i]] |= 1L << myXs[i];
+            if (myColumnBottoms[myXs[i]] < 0 || myYs[i] < myColumnBottoms[myXs[i]]) {
+                myColumnBottoms[myXs[i]] = myYs[i];
+            }
+            minX = Math.min(minX, myXs[i]);
+            maxX = Math.max(maxX, myXs[i]);
+            minY = Math.min(minY, myYs[i]);
+            maxY = Math.max(maxY, myYs[i]);
+        }
+        myMinX = minX;
+        myMaxX = maxX;
+        myMinY = minY;
+        myMaxY = maxY;
+    }
+
+    /**
+     * Returns the precomputed shape of a TetrisPiece in a Rotation.
+     *
+     * @param thePiece the TetrisPiece.
+     * @param theRotation the Rotation.
+     * @return the shape.
+     */
+    static PieceShape of(final TetrisPiece thePiece, final Rotation theRotation) {
+        return SHAPES[thePiece.ordinal()][theRotation.ordinal()];
+    }
+
+    /**
+     * Returns the number of blocks in the shape.
+     *
+     * @return the number of blocks.
+     */
+    int size() {
+        return myXs.length;
+    }
+
+    /**
+     * Returns the local x offset of a block.
+     *
+     * @param theIndex the index of the block.
+     * @return the local x offset.
+     */
+    int getX(final int theIndex) {
+        return myXs[theIndex];
+    }
+
+    /**
+     * Returns the local y offset of a block.
+     *
+     * @param theIndex the index of the block.
+     * @return the local y offset.
+     */
+    int getY(final int theIndex) {
+        return myYs[theIndex];
+    }
+
+    /**
+     * Returns the occupancy mask of a local row shifted to a board column.
+     *
+     * @param theRow the local row, between getMinY() and getMaxY().
+     * @param theX the board column of the local origin.
+     * @return the row mask in board coordinates.
+     */
+    long getRowMask(final int theRow, final int theX) {
+        long result = myRowMasks[theRow];
+        if (theX >= 0) {
+            result <<= theX;
+        } else {
+            result >>>= -theX;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the lowest local y offset of a block in a local column.
+     * Every column between getMinX() and getMaxX() contains a block.
+     *
+     * @param theColumn the local column.
+     * @return the lowest local y offset in the column, or -1 if the column
+     *         has no blocks.
+     */
+    int getColumnBottom(final int theColumn) {
+        return myColumnBottoms[theColumn];
+    }
+
+    /**
+     * Returns the smallest local x offset of any block.
+     *
+     * @return the smallest local x offset.
+     */
+    int getMinX() {
+        return myMinX;
+    }
+
+    /**
+     * Returns the largest local x offset of any block.
+     *
+     * @return the largest local x offset.
+     */
+    int getMaxX() {
+        return myMaxX;
+    }
+
+    /**
+     * Returns the smallest local y offset of any block.
+     *
+     * @return the smallest local y offset.
+     */
+    int getMinY() {
+        return myMinY;
+    }
+
+    /**
+     * Returns the largest local y offset of any block.
+     *
+     * @return the largest local y offset.
+     */
+    int getMaxY() {
+        return myMaxY;
+    }
+
+    /**
+     * Returns the ordinal of the first Rotation of the same TetrisPiece
+     * whose shape covers the same cells as this one up to translation.
+     * Two placements of a piece cover the same board cells exactly when
+     * their shapes have the same canonical rotation and the same board
+     * positions of their lowest, leftmost extents.
+     *
+     * @return the canonical rotation ordinal.
+     */
+    int getCanonicalRotation() {
+        return myCanonical;
+    }
+
+    /**
+     * Returns the block points of the shape transformed by a board position.
+     *
+     * @param thePosition the board position, or null for local points.
+     * @return a new array of block points.
+     */
+    Point[] getPoints(final Point thePosition) {
+        final Point[] blocks = new Point[myXs.length];
+        for (int i = 0; i < blocks.length; i++) {
+            if (thePosition == null) {
+                blocks[i] = new Point(myXs[i], myYs[i]);
+            } else {
+                blocks[i] = thePosition.transform(myXs[i], myYs[i]);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Builds the shape table for every TetrisPiece and Rotation.
+     *
+     * @return the shape table.
+     */
+    private static PieceShape[][] createShapes() {
+        final TetrisPiece[] pieces = TetrisPiece.values();
+        final Rotation[] rotations = Rotation.values();
+        final PieceShape[][] shapes = new PieceShape[pieces.length][rotations.length];
+        for (final TetrisPiece piece : pieces) {
+            final PieceShape[] row = shapes[piece.ordinal()];
+            for (final Rotation rotation : rotations) {
+                final PieceShape shape = new PieceShape(rotate(piece, rotation));
+                shape.myCanonical = rotation.ordinal();
+                for (int i = rotation.ordinal() - 1; i >= 0; i--) {
+                    if (shape.sameCells(row[i])) {
+                        shape.myCanonical = row[i].myCanonical;
+                    }
+                }
+                row[rotation.ordinal()] = shape;
+            }
+        }
+        return shapes;
+    }
+
+    /**
+     * Tests whether another shape covers the same cells up to translation.
+     *
+     * @param theOther the other shape.
+     * @return true if the shapes are equal after moving both to the origin.
+     */
+    private boolean sameCells(final PieceShape theOther) {
+        boolean result = myMaxY - myMinY == theOther.myMaxY - theOther.myMinY;
+        for (int r = 0; result && r <= myMaxY - myMinY; r++) {
+            result = myRowMasks[myMinY + r] >>> myMinX
+                     == theOther.myRowMasks[theOther.myMinY + r] >>> theOther.myMinX;
+        }
+        return result;
+    }
+
+    /**
+     * Rotates the local points of a TetrisPiece.
+     * The O piece does not rotate.
+     *
+     * @param thePiece the TetrisPiece.
+     * @param theRotation the Rotation.
+     * @return the rotated local points.
+     */
+    private static Point[] rotate(final TetrisPiece thePiece, final Rotation theRotation) {
+        final Point[] blocks = thePiece.getPoints();
+        final int width = thePiece.getWidth();
+        for (int i = 0; i < blocks.length; i++) {
+            final Point block = blocks[i];
+            if (thePiece != TetrisPiece.O) {
+                switch (theRotation) {
+                    case QUARTER:
+                        blocks[i] = new Point(block.y(), width - block.x() - 1);
+                        break;
+                    case HALF:
+                        blocks[i] = new Point(width - block.x() - 1,
+                                              width - block.y() - 1);
+                        break;
+                    case THREEQUARTER:
+                        blocks[i] = new Point(width - block.y() - 1, block.x());
+                        break;
+                    default:
+                }
+            }
+        }
+        return blocks;
+    }
+}
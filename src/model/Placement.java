@@ -0,0 +1,134 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.util.Objects;
+
+/**
+ * A final resting place of a TetrisPiece: its rotation and the board
+ * position at which it would freeze.
+ *
+ * A Placement is immutable.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class Placement {
+
+    /**
+     * The TetrisPiece.
+     */
+    private final TetrisPiece myTetrisPiece;
+
+    /**
+     * The rotation of the piece.
+     */
+    private final Rotation myRotation;
+
+    /**
+     * The board column of the piece position.
+     */
+    private final int myX;
+
+    /**
+     * The board row of the piece position.
+     */
+    private final int myY;
+
+    /**
+     * Constructs a Placement.
+     *
+     * @param theTetrisPiece the type of TetrisPiece.
+     * @param theRotation the rotation of the piece.
+     * @param theX the board column of the piece position.
+     * @param theY the board row of the piece position.
+     */
+    public Placement(final TetrisPiece theTetrisPiece, final Rotation theRotation,
+                     final int theX, final int theY) {
+        myTetrisPiece = Objects.requireNonNull(theTetrisPiece);
+        myRotation = Objects.requireNonNull(theRotation);
+        myX = theX;
+        myY = theY;
+    }
+
+    /**
+     * Returns the TetrisPiece.
+     *
+     * @return the TetrisPiece.
+     */
+    public TetrisPiece getTetrisPiece() {
+        return myTetrisPiece;
+    }
+
+    /**
+     * Returns the rotation of the piece.
+     *
+     * @return the Rotation.
+     */
+    public Rotation getRotation() {
+        return myRotation;
+    }
+
+    /**
+     * Returns the board column of the piece position.
+     *
+     * @return the x coordinate.
+     */
+    public int getX() {
+        return myX;
+    }
+
+    /**
+     * Returns the board row of the piece position, the row it lands at.
+     *
+     * @return the y coordinate.
+     */
+    public int getY() {
+        return myY;
+    }
+
+    /**
+     * Returns the board points the piece would freeze at.
+     *
+     * @return the board points of the blocks.
+     */
+    public Point[] getPoints() {
+        return getShape().getPoints(new Point(myX, myY));
+    }
+
+    /**
+     * Returns the precomputed shape of the piece.
+     *
+     * @return the shape.
+     */
+    PieceShape getShape() {
+        return PieceShape.of(myTetrisPiece, myRotation);
+    }
+
+    @Override
+    public boolean equals(final Object theOther) {
+        boolean result = false;
+        if (theOther == this) {
+            result = true;
+        } else if (theOther != null && theOther.getClass() == getClass()) {
+            final Placement p = (Placement) theOther;
+            result = myTetrisPiece == p.myTetrisPiece && myRotation == p.myRotation
+                     && myX == p.myX && myY == p.myY;
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(myTetrisPiece, myRotation, myX, myY);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s (%d, %d)", myTetrisPiece, myRotation, myX, myY);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.wallkicks.WallKick;
+
+/**
+ * Enumerates the reachable final placements of a piece on a GameCore.
+ *
+ * A breadth first search runs over piece states packed into single ints
+ * (rotation, row and column), starting at the current piece and following
+ * the same moves the game allows: left, right, down, and clockwise and
+ * counterclockwise rotation with the WallKick offsets tried in order. A
+ * state from which the piece cannot move down is a placement. High above
+ * the stack every row behaves alike, so a down move from there jumps
+ * straight to the lowest such row instead of visiting each one. Visited
+ * states are recorded in a bit set, and placements covering the same cells
+ * as one already found (such as the rotations of the O piece) are skipped.
+ *
+ * The search buffers are allocated once per board and reused, so a finder
+ * belongs to one GameCore and must not be shared between threads.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+final class PlacementFinder {
+
+    /**
+     * The columns left of the board, and rows below it, that a piece
+     * position may take while its blocks stay on the board.
+     */
+    private static final int MARGIN = 4;
+
+    /**
+     * The rows above the board a piece may be kicked up into. A single
+     * wall kick lifts a piece by at most two rows; states higher than this
+     * are not explored.
+     */
+    private static final int HEADROOM = 8;
+
+    /**
+     * The rows kept between the stack and the lowest state reached by a
+     * jump through empty rows. A shape has no blocks below its position
+     * and a wall kick lowers it by at most two rows, so no single move
+     * from that state or above can touch a frozen block.
+     */
+    private static final int CLEARANCE = 2;
+
+    /**
+     * The number of rotations.
+     */
+    private static final Rotation[] ROTATIONS = Rotation.values();
+
+    /**
+     * The game whose placements are found.
+     */
+    private final GameCore myCore;
+
+    /**
+     * The number of columns in the packed state space.
+     */
+    private final int myColumns;
+
+    /**
+     * The number of rows in the packed state space.
+     */
+    private final int myRows;
+
+    /**
+     * The visited states.
+     */
+    private final long[] myVisited;
+
+    /**
+     * The cells covered by the placements found, keyed like the states.
+     */
+    private final long[] myCovered;
+
+    /**
+     * The queue of states to expand.
+     */
+    private final int[] myQueue;
+
+    /**
+     * The index of the next free slot in the queue.
+     */
+    private int myQueueEnd;
+
+    /**
+     * The lowest row a down move may jump to, CLEARANCE rows above the
+     * highest column.
+     */
+    private int myOpenRow;
+
+    /**
+     * Constructs a finder for a game.
+     *
+     * @param theCore the game.
+     */
+    PlacementFinder(final GameCore theCore) {
+        myCore = theCore;
+        myColumns = theCore.getWidth() + MARGIN;
+        myRows = theCore.getHeight() + MARGIN + HEADROOM;
+        final int states = ROTATIONS.length * myRows * myColumns;
+        myVisited = new long[(states + Long.SIZE - 1) / Long.SIZE];
+        myCovered = new long[myVisited.length];
+        myQueue = new int[states];
+    }
+
+    /**
+     * Finds the placements reachable by a piece.
+     *
+     * @param thePiece the piece, normally the current piece of the game.
+     * @return the placements in breadth first order, or an empty list if
+     *         the piece is not in a legal position.
+     */
+    List<Placement> find(final MovableTetrisPiece thePiece) {
+        Arrays.fill(myVisited, 0L);
+        Arrays.fill(myCovered, 0L);
+        myQueueEnd = 0;
+        myOpenRow = 0;
+        for (int x = 0; x < myCore.getWidth(); x++) {
+            myOpenRow = Math.max(myOpenRow, myCore.getColumnHeight(x));
+        }
+        myOpenRow += CLEARANCE;
+        final TetrisPiece piece = thePiece.getTetrisPiece();
+        final List<Placement> result = new ArrayList<Placement>();
+        visit(piece, thePiece.getRotation().ordinal(),
+              thePiece.getPosition().x(), thePiece.getPosition().y());
+        for (int head = 0; head < myQueueEnd; head++) {
+            final int state = myQueue[head];
+            final int x = state % myColumns - MARGIN;
+            final int y = state / myColumns % myRows - MARGIN;
+            final int rotation = state / myColumns / myRows;
+            visit(piece, rotation, x - 1, y);
+            visit(piece, rotation, x + 1, y);
+            if (y - 1 > myOpenRow) {
+                visit(piece, rotation, x, myOpenRow);
+            } else if (!visit(piece, rotation, x, y - 1)) {
+                land(result, piece, rotation, x, y);
+            }
+            rotate(piece, rotation, x, y, ROTATIONS[rotation].clockwise());
+            rotate(piece, rotation, x, y, ROTATIONS[rotation].counterClockwise());
+        }
+        return result;
+    }
+
+    /**
+     * Follows a rotation the way GameCore.rotate() does: the O piece turns
+     * in place, and other pieces take the first legal wall kick offset.
+     *
+     * @param thePiece the piece.
+     * @param theRotation the rotation ordinal of the state.
+     * @param theX the column of the state.
+     * @param theY the row of the state.
+     * @param theGoal the rotation to turn to.
+     */
+    private void rotate(final TetrisPiece thePiece, final int theRotation,
+                        final int theX, final int theY, final Rotation theGoal) {
+        final PieceShape shape = PieceShape.of(thePiece, theGoal);
+        if (thePiece == TetrisPiece.O) {
+            visit(thePiece, theGoal.ordinal(), theX, theY);
+        } else {
+            for (final Point p : WallKick.getWallKicks(thePiece, ROTATIONS[theRotation],
+                                                       theGoal)) {
+                if (myCore.isPieceLegal(shape, theX + p.x(), theY + p.y())) {
+                    visit(thePiece, theGoal.ordinal(), theX + p.x(), theY + p.y());
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a state if it is legal and has not been visited.
+     *
+     * @param thePiece the piece.
+     * @param theRotation the rotation ordinal.
+     * @param theX the column of the piece position.
+     * @param theY the row of the piece position.
+     * @return true if the state is legal.
+     */
+    private boolean visit(final TetrisPiece thePiece, final int theRotation,
+                          final int theX, final int theY) {
+        final boolean result = inRange(theX, theY)
+                        && myCore.isPieceLegal(PieceShape.of(thePiece, ROTATIONS[theRotation]),
+                                               theX, theY);
+        if (result) {
+            final int state = pack(theRotation, theX, theY);
+            if (!isSet(myVisited, state)) {
+                set(myVisited, state);
+                myQueue[myQueueEnd] = state;
+                myQueueEnd++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a placement unless one covering the same cells was found.
+     *
+     * @param theResult the placements found so far.
+     * @param thePiece the piece.
+     * @param theRotation the rotation ordinal.
+     * @param theX the column of the piece position.
+     * @param theY the row of the piece position.
+     */
+    private void land(final List<Placement> theResult, final TetrisPiece thePiece,
+                      final int theRotation, final int theX, final int theY) {
+        final PieceShape shape = PieceShape.of(thePiece, ROTATIONS[theRotation]);
+        final int covered = pack(shape.getCanonicalRotation(),
+                                 theX + shape.getMinX(), theY + shape.getMinY());
+        if (!isSet(myCovered, covered)) {
+            set(myCovered, covered);
+            theResult.add(new Placement(thePiece, ROTATIONS[theRotation], theX, theY));
+        }
+    }
+
+    /**
+     * Tests whether a piece position fits in the packed state space.
+     *
+     * @param theX the column.
+     * @param theY the row.
+     * @return true if the position can be packed.
+     */
+    private boolean inRange(final int theX, final int theY) {
+        return theX + MARGIN >= 0 && theX + MARGIN < myColumns
+               && theY + MARGIN >= 0 && theY + MARGIN < myRows;
+    }
+
+    /**
+     * Packs a piece state into an int.
+     *
+     * @param theRotation the rotation ordinal.
+     * @param theX the column.
+     * @param theY the row.
+     * @return the packed state.
+     */
+    private int pack(final int theRotation, final int theX, final int theY) {
+        return (theRotation * myRows + theY + MARGIN) * myColumns + theX + MARGIN;
+    }
+
+    /**
+     * Tests a bit of a bit set.
+     *
+     * @param theBits the bit set.
+     * @param theIndex the bit.
+     * @return true if the bit is set.
+     */
+    private static boolean isSet(final long[] theBits, final int theIndex) {
+        return (theBits[theIndex / Long.SIZE] & 1L << theIndex) != 0L;
+    }
+
+    /**
+     * Sets a bit of a bit set.
+     *
+     * @param theBits the bit set.
+     * @param theIndex the bit.
+     */
+    private static void set(final long[] theBits, final int theIndex) {
+        theBits[theIndex / Long.SIZE] |= 1L << theIndex;
+    }
+}
@@ -0,0 +1,491 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact, versioned binary format for the complete state of a game.
+ *
+ * A save holds the board size, the game over state, the frozen blocks,
+ * the current and next pieces, the counters and the exact position of
+ * the piece generator and of any non random sequence, so a loaded game
+ * deals the same pieces the saved one would have. A typical save takes a
+ * few dozen bytes:
+ *
+ * <pre>
+ * int     magic "TSAV"
+ * byte    version
+ * varint  width, height, at most 64 and MAX_HEIGHT
+ * byte    flags: game over, has current piece, has next piece,
+ *         has non random sequence
+ * varint  number of rows up to the top of the stack
+ * varint  the occupancy mask of each of those rows, bottom row first
+ * varint  the palette: bit i is set when palette index i is used
+ * bits    the palette position of each frozen block, row by row, in as
+ *         few bits as the palette size needs, packed into whole bytes
+ * [byte   current piece ordinal &lt;&lt; 2 | rotation ordinal,
+ *  zigzag varint x, y]
+ * [byte   next piece ordinal]
+ * varint  pieces placed, lines cleared, ticks
+ * byte    generator kind, then its state
+ * [sequence of pieces and the index of the next one]
+ * </pre>
+ *
+ * Only the UniformPieceGenerator, BagPieceGenerator and
+ * SequencePieceGenerator can be saved; their state is package-private,
+ * which is why this class lives in the model package.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class SaveFormat {
+
+    /**
+     * The first four bytes of a save: "TSAV".
+     */
+    static final int MAGIC = 0x54534156;
+
+    /**
+     * The version of the save format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The tallest board a save may hold. A reader checks the size against
+     * it before building the board, so a corrupt height cannot make it
+     * allocate a huge one.
+     */
+    public static final int MAX_HEIGHT = 4096;
+
+    /**
+     * The flag for a game that is over.
+     */
+    private static final int GAME_OVER = 1;
+
+    /**
+     * The flag for a game with a current piece.
+     */
+    private static final int HAS_CURRENT = 2;
+
+    /**
+     * The flag for a game with a next piece.
+     */
+    private static final int HAS_NEXT = 4;
+
+    /**
+     * The flag for a game with a non random piece sequence.
+     */
+    private static final int HAS_SEQUENCE = 8;
+
+    /**
+     * The generator kind of a UniformPieceGenerator.
+     */
+    private static final int UNIFORM = 0;
+
+    /**
+     * The generator kind of a BagPieceGenerator.
+     */
+    private static final int BAG = 1;
+
+    /**
+     * The generator kind of a SequencePieceGenerator.
+     */
+    private static final int SEQUENCE = 2;
+
+    /**
+     * The number of bits of a piece byte that hold the rotation.
+     */
+    private static final int ROTATION_BITS = 2;
+
+    /**
+     * The number of TetrisPieces.
+     */
+    private static final int PIECES = TetrisPiece.values().length;
+
+    /**
+     * The most bytes taken by everything except the rows, the cells and
+     * the piece sequences: the magic number, five single bytes, a bag of
+     * pieces, a long and ten varints.
+     */
+    private static final int FIXED_BYTES = Integer.BYTES + 5 + PIECES + Long.BYTES
+                                           + 10 * Varint.MAX_BYTES;
+
+    /**
+     * The most bits a cell can take: enough for every palette index.
+     */
+    private static final int MAX_CELL_BITS = 3;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SaveFormat() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Returns the most bytes write() can take for a game.
+     *
+     * @param theGame the game.
+     * @return the size bound.
+     */
+    public static int maxBytes(final GameCore theGame) {
+        final int cells = theGame.getWidth() * theGame.getHeight();
+        return FIXED_BYTES + theGame.getHeight() * Varint.MAX_BYTES
+               + (cells * MAX_CELL_BITS + Byte.SIZE - 1) / Byte.SIZE
+               + sequenceBytes(theGame.getPieceGenerator())
+               + sequenceBytes(theGame.getPieceSequence());
+    }
+
+    /**
+     * Writes the complete state of a game.
+     *
+     * @param theGame the game.
+     * @param theBuffer the buffer to write to.
+     * @throws IllegalArgumentException if the game uses a piece generator
+     *         that cannot be saved, or is taller than MAX_HEIGHT; nothing
+     *         is written.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void write(final GameCore theGame, final ByteBuffer theBuffer) {
+        if (theGame.getHeight() > MAX_HEIGHT) {
+            throw new IllegalArgumentException("Cannot save a board taller than "
+                                               + MAX_HEIGHT);
+        }
+        final PieceGenerator generator = theGame.getPieceGenerator();
+        if (!(generator instanceof UniformPieceGenerator
+              || generator instanceof BagPieceGenerator
+              || generator instanceof SequencePieceGenerator)) {
+            throw new IllegalArgumentException("Cannot save a "
+                                               + generator.getClass().getSimpleName());
+        }
+        final MovableTetrisPiece current = theGame.getCurrentPiece();
+        final TetrisPiece next = theGame.getNextPiece();
+        final SequencePieceGenerator sequence = theGame.getPieceSequence();
+        int flags = 0;
+        if (theGame.isGameOver()) {
+            flags |= GAME_OVER;
+        }
+        if (current != null) {
+            flags |= HAS_CURRENT;
+        }
+        if (next != null) {
+            flags |= HAS_NEXT;
+        }
+        if (sequence != null) {
+            flags |= HAS_SEQUENCE;
+        }
+        theBuffer.putInt(MAGIC);
+        theBuffer.put((byte) VERSION);
+        Varint.putUnsigned(theBuffer, theGame.getWidth());
+        Varint.putUnsigned(theBuffer, theGame.getHeight());
+        theBuffer.put((byte) flags);
+        writeCells(theGame, theBuffer);
+        if (current != null) {
+            theBuffer.put((byte) (current.getTetrisPiece().ordinal() << ROTATION_BITS
+                                  | current.getRotation().ordinal()));
+            Varint.putSigned(theBuffer, current.getPosition().x());
+            Varint.putSigned(theBuffer, current.getPosition().y());
+        }
+        if (next != null) {
+            theBuffer.put((byte) next.ordinal());
+        }
+        Varint.putUnsigned(theBuffer, theGame.getPiecesPlaced());
+        Varint.putUnsigned(theBuffer, theGame.getLinesCleared());
+        Varint.putUnsigned(theBuffer, theGame.getTicks());
+        if (generator instanceof UniformPieceGenerator) {
+            theBuffer.put((byte) UNIFORM);
+            theBuffer.putLong(((UniformPieceGenerator) generator).getState());
+        } else if (generator instanceof BagPieceGenerator) {
+            final BagPieceGenerator bag = (BagPieceGenerator) generator;
+            theBuffer.put((byte) BAG);
+            theBuffer.putLong(bag.getState());
+            Varint.putUnsigned(theBuffer, bag.getIndex());
+            for (final TetrisPiece piece : bag.getBag()) {
+                theBuffer.put((byte) piece.ordinal());
+            }
+        } else {
+            theBuffer.put((byte) SEQUENCE);
+            writeSequence((SequencePieceGenerator) generator, theBuffer);
+        }
+        if (sequence != null) {
+            writeSequence(sequence, theBuffer);
+        }
+    }
+
+    /**
+     * Reads the complete state of a game into a new game without a
+     * listener or recorder.
+     *
+     * @param theBuffer the buffer to read from.
+     * @return the game.
+     * @throws StreamCorruptedException if the buffer does not hold a save
+     *         of a supported version, or the board is larger than a save
+     *         may hold.
+     * @throws java.nio.BufferUnderflowException if the buffer ends first.
+     */
+    public static GameCore read(final ByteBuffer theBuffer) throws StreamCorruptedException {
+        if (theBuffer.getInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a save");
+        }
+        final int version = theBuffer.get();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported save version " + version);
+        }
+        final int width = readInt(theBuffer, Long.SIZE);
+        final int height = readInt(theBuffer, MAX_HEIGHT);
+        if (width < 1 || height < 1) {
+            throw new StreamCorruptedException("Bad board size " + width + " x " + height);
+        }
+        final int flags = theBuffer.get();
+        final GameCore result = new GameCore(width, height);
+        readCells(result, theBuffer);
+        MovableTetrisPiece current = null;
+        if ((flags & HAS_CURRENT) != 0) {
+            final int piece = Byte.toUnsignedInt(theBuffer.get());
+            final int rotation = piece & (1 << ROTATION_BITS) - 1;
+            final int x = (int) Varint.getSigned(theBuffer);
+            final int y = (int) Varint.getSigned(theBuffer);
+            current = new MovableTetrisPiece(piece(piece >>> ROTATION_BITS),
+                                             new Point(x, y),
+                                             Rotation.values()[rotation]);
+        }
+        TetrisPiece next = null;
+        if ((flags & HAS_NEXT) != 0) {
+            next = piece(theBuffer.get());
+        }
+        final int pieces = readInt(theBuffer, Integer.MAX_VALUE);
+        final int lines = readInt(theBuffer, Integer.MAX_VALUE);
+        final long ticks = Varint.getUnsigned(theBuffer);
+        final int kind = theBuffer.get();
+        final PieceGenerator generator;
+        if (kind == UNIFORM) {
+            generator = new UniformPieceGenerator(theBuffer.getLong());
+        } else if (kind == BAG) {
+            final long state = theBuffer.getLong();
+            final int index = readInt(theBuffer, PIECES);
+            final TetrisPiece[] bag = new TetrisPiece[PIECES];
+            for (int i = 0; i < bag.length; i++) {
+                bag[i] = piece(theBuffer.get());
+            }
+            generator = new BagPieceGenerator(state, bag, index);
+        } else if (kind == SEQUENCE) {
+            generator = readSequence(theBuffer);
+        } else {
+            throw new StreamCorruptedException("Unknown piece generator " + kind);
+        }
+        SequencePieceGenerator sequence = null;
+        if ((flags & HAS_SEQUENCE) != 0) {
+            sequence = readSequence(theBuffer);
+        }
+        result.loadPieces(current, next, generator, sequence);
+        result.loadProgress((flags & GAME_OVER) != 0, pieces, lines, ticks);
+        return result;
+    }
+
+    /**
+     * Writes the rows up to the top of the stack and the palette position
+     * of every frozen block.
+     *
+     * @param theGame the game.
+     * @param theBuffer the buffer to write to.
+     */
+    private static void writeCells(final GameCore theGame, final ByteBuffer theBuffer) {
+        final int width = theGame.getWidth();
+        int top = 0;
+        for (int x = 0; x < width; x++) {
+            top = Math.max(top, theGame.getColumnHeight(x));
+        }
+        Varint.putUnsigned(theBuffer, top);
+        int palette = 0;
+        for (int y = 0; y < top; y++) {
+            final long mask = theGame.getRowMask(y);
+            Varint.putUnsigned(theBuffer, mask);
+            for (long m = mask; m != 0L; m &= m - 1) {
+                palette |= 1 << theGame.getCell(Long.numberOfTrailingZeros(m), y);
+            }
+        }
+        Varint.putUnsigned(theBuffer, palette);
+        final int bits = cellBits(palette);
+        if (bits > 0) {
+            long pending = 0L;
+            int count = 0;
+            for (int y = 0; y < top; y++) {
+                for (long m = theGame.getRowMask(y); m != 0L; m &= m - 1) {
+                    final int color = theGame.getCell(Long.numberOfTrailingZeros(m), y);
+                    pending |= (long) Integer.bitCount(palette & (1 << color) - 1) << count;
+                    count += bits;
+                    if (count >= Byte.SIZE) {
+                        theBuffer.put((byte) pending);
+                        pending >>>= Byte.SIZE;
+                        count -= Byte.SIZE;
+                    }
+                }
+            }
+            if (count > 0) {
+                theBuffer.put((byte) pending);
+            }
+        }
+    }
+
+    /**
+     * Reads the rows and the palette positions written by writeCells()
+     * into a game.
+     *
+     * @param theGame the game, with an empty board.
+     * @param theBuffer the buffer to read from.
+     * @throws StreamCorruptedException if the rows or palette do not fit
+     *         the board.
+     */
+    private static void readCells(final GameCore theGame, final ByteBuffer theBuffer)
+        throws StreamCorruptedException {
+        final int width = theGame.getWidth();
+        final int height = theGame.getHeight();
+        final long fullRow = -1L >>> (Long.SIZE - width);
+        final int top = readInt(theBuffer, height);
+        final long[] masks = new long[height];
+        for (int y = 0; y < top; y++) {
+            masks[y] = Varint.getUnsigned(theBuffer);
+            if ((masks[y] & ~fullRow) != 0L) {
+                throw new StreamCorruptedException("Row " + y + " is wider than the board");
+            }
+        }
+        final int palette = readInt(theBuffer, (1 << (PIECES + 1)) - 1);
+        if ((palette & 1) != 0) {
+            throw new StreamCorruptedException("Palette holds an empty cell");
+        }
+        final byte[] entries = new byte[Integer.bitCount(palette)];
+        int next = 0;
+        for (int i = 1; i <= PIECES; i++) {
+            if ((palette & 1 << i) != 0) {
+                entries[next] = (byte) i;
+                next++;
+            }
+        }
+        final int bits = cellBits(palette);
+        final byte[] colors = new byte[width * height];
+        long pending = 0L;
+        int count = 0;
+        for (int y = 0; y < top; y++) {
+            for (long m = masks[y]; m != 0L; m &= m - 1) {
+                if (count < bits) {
+                    pending |= (long) Byte.toUnsignedInt(theBuffer.get()) << count;
+                    count += Byte.SIZE;
+                }
+                final int entry = (int) (pending & (1 << bits) - 1);
+                pending >>>= bits;
+                count -= bits;
+                if (entry >= entries.length) {
+                    throw new StreamCorruptedException("Color outside the palette");
+                }
+                colors[y * width + Long.numberOfTrailingZeros(m)] = entries[entry];
+            }
+        }
+        theGame.loadCells(masks, colors);
+    }
+
+    /**
+     * Returns the number of bits needed for a palette position.
+     *
+     * @param thePalette the palette mask.
+     * @return the number of bits, 0 for a palette of at most one color.
+     */
+    private static int cellBits(final int thePalette) {
+        final int size = Integer.bitCount(thePalette);
+        int result = 0;
+        if (size > 1) {
+            result = Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the pieces of a sequence and the index of the next one.
+     *
+     * @param theSequence the sequence.
+     * @param theBuffer the buffer to write to.
+     */
+    private static void writeSequence(final SequencePieceGenerator theSequence,
+                                      final ByteBuffer theBuffer) {
+        final List<TetrisPiece> pieces = theSequence.getPieces();
+        Varint.putUnsigned(theBuffer, pieces.size());
+        for (final TetrisPiece piece : pieces) {
+            theBuffer.put((byte) piece.ordinal());
+        }
+        Varint.putUnsigned(theBuffer, theSequence.getIndex());
+    }
+
+    /**
+     * Reads a sequence written by writeSequence().
+     *
+     * @param theBuffer the buffer to read from.
+     * @return the sequence, positioned at the saved index.
+     * @throws StreamCorruptedException if the sequence is empty or the
+     *         index is out of range.
+     */
+    private static SequencePieceGenerator readSequence(final ByteBuffer theBuffer)
+        throws StreamCorruptedException {
+        final int length = readInt(theBuffer, theBuffer.remaining());
+        if (length == 0) {
+            throw new StreamCorruptedException("Empty piece sequence");
+        }
+        final List<TetrisPiece> pieces = new ArrayList<TetrisPiece>(length);
+        for (int i = 0; i < length; i++) {
+            pieces.add(piece(theBuffer.get()));
+        }
+        return new SequencePieceGenerator(pieces, readInt(theBuffer, length));
+    }
+
+    /**
+     * Returns the most bytes writeSequence() can take for a generator.
+     *
+     * @param theGenerator the generator, or null.
+     * @return the size bound, 0 unless it is a SequencePieceGenerator.
+     */
+    private static int sequenceBytes(final PieceGenerator theGenerator) {
+        int result = 0;
+        if (theGenerator instanceof SequencePieceGenerator) {
+            result = 2 * Varint.MAX_BYTES
+                     + ((SequencePieceGenerator) theGenerator).getPieces().size();
+        }
+        return result;
+    }
+
+    /**
+     * Reads a varint that must be between 0 and a maximum.
+     *
+     * @param theBuffer the buffer to read from.
+     * @param theMax the largest allowed value.
+     * @return the value.
+     * @throws StreamCorruptedException if the value is out of range.
+     */
+    private static int readInt(final ByteBuffer theBuffer, final int theMax)
+        throws StreamCorruptedException {
+        final long value = Varint.getUnsigned(theBuffer);
+        if (value < 0L || value > theMax) {
+            throw new StreamCorruptedException("Value " + value + " is out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns the TetrisPiece with an ordinal.
+     *
+     * @param theOrdinal the ordinal.
+     * @return the piece.
+     * @throws StreamCorruptedException if the ordinal is out of range.
+     */
+    private static TetrisPiece piece(final int theOrdinal) throws StreamCorruptedException {
+        if (theOrdinal < 0 || theOrdinal >= PIECES) {
+            throw new StreamCorruptedException("Unknown piece " + theOrdinal);
+        }
+        return TetrisPiece.values()[theOrdinal];
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.util.List;
+
+/**
+ * A PieceGenerator that loops through a fixed list of pieces.
+ *
+ * The list is not copied, so a very long sequence is held in memory only
+ * once however many games use it. It must not be modified while any
+ * generator is using it.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class SequencePieceGenerator implements PieceGenerator {
+
+    /**
+     * The pieces to loop through.
+     */
+    private final List<TetrisPiece> myPieces;
+
+    /**
+     * The index of the next piece to deal.
+     */
+    private int myIndex;
+
+    /**
+     * Constructs a generator that loops through a list of pieces.
+     *
+     * @param thePieces the pieces, which must not be empty.
+     */
+    public SequencePieceGenerator(final List<TetrisPiece> thePieces) {
+        if (thePieces.isEmpty()) {
+            throw new IllegalArgumentException("thePieces must not be empty");
+        }
+        myPieces = thePieces;
+    }
+
+    /**
+     * Constructs a generator positioned in a list of pieces.
+     *
+     * @param thePieces the pieces, which must not be empty.
+     * @param theIndex the index of the next piece to deal.
+     */
+    SequencePieceGenerator(final List<TetrisPiece> thePieces, final int theIndex) {
+        this(thePieces);
+        myIndex = theIndex;
+    }
+
+    /**
+     * Returns the pieces looped through.
+     *
+     * @return the list of pieces, not copied.
+     */
+    List<TetrisPiece> getPieces() {
+        return myPieces;
+    }
+
+    /**
+     * Returns the index of the next piece to deal.
+     *
+     * @return the index.
+     */
+    int getIndex() {
+        return myIndex;
+    }
+
+    @Override
+    public TetrisPiece next() {
+        myIndex %= myPieces.size();
+        final TetrisPiece result = myPieces.get(myIndex);
+        myIndex++;
+        return result;
+    }
+
+    @Override
+    public SequencePieceGenerator copy() {
+        return new SequencePieceGenerator(myPieces, myIndex);
+    }
+
+    /**
+     * Starts the sequence over from its first piece.
+     */
+    public void restart() {
+        myIndex = 0;
+    }
+}
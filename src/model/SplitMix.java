@@ -0,0 +1,108 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+/**
+ * A small, fast, seedable pseudo random number generator (SplitMix64, the
+ * algorithm behind java.util.SplittableRandom).
+ *
+ * Unlike java.util.Random it is not synchronized and uses no atomic
+ * operations, so each game can own one without contention. Unlike
+ * SplittableRandom its whole state is a single long that can be read and
+ * restored, so a game's random stream can be copied and saved.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+final class SplitMix {
+
+    /**
+     * The increment added to the state for each value (the golden gamma).
+     */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The first multiplier of the output mix.
+     */
+    private static final long MIX_1 = 0xBF58476D1CE4E5B9L;
+
+    /**
+     * The second multiplier of the output mix.
+     */
+    private static final long MIX_2 = 0x94D049BB133111EBL;
+
+    /**
+     * The first shift of the output mix.
+     */
+    private static final int SHIFT_1 = 30;
+
+    /**
+     * The second shift of the output mix.
+     */
+    private static final int SHIFT_2 = 27;
+
+    /**
+     * The third shift of the output mix.
+     */
+    private static final int SHIFT_3 = 31;
+
+    /**
+     * The current state.
+     */
+    private long myState;
+
+    /**
+     * Constructs a generator with the given state.
+     *
+     * @param theState the initial state (the seed).
+     */
+    SplitMix(final long theState) {
+        myState = theState;
+    }
+
+    /**
+     * Returns the current state.
+     *
+     * @return the state.
+     */
+    long getState() {
+        return myState;
+    }
+
+    /**
+     * Returns the next pseudo random long.
+     *
+     * @return a pseudo random long.
+     */
+    long nextLong() {
+        myState += GAMMA;
+        return mix(myState);
+    }
+
+    /**
+     * Returns a pseudo random int between 0 (inclusive) and a bound (exclusive).
+     *
+     * @param theBound the bound, which must be positive.
+     * @return a pseudo random int below the bound.
+     */
+    int nextInt(final int theBound) {
+        return (int) (((nextLong() >>> Integer.SIZE) * theBound) >>> Integer.SIZE);
+    }
+
+    /**
+     * Scrambles a long so that nearby inputs give unrelated outputs.
+     *
+     * @param theValue the value to scramble.
+     * @return the scrambled value.
+     */
+    static long mix(final long theValue) {
+        long z = theValue;
+        z = (z ^ (z >>> SHIFT_1)) * MIX_1;
+        z = (z ^ (z >>> SHIFT_2)) * MIX_2;
+        return z ^ (z >>> SHIFT_3);
+    }
+}
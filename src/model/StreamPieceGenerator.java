@@ -0,0 +1,120 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.util.Iterator;
+
+/**
+ * A PieceGenerator that pulls its pieces lazily from an Iterator, for
+ * example one reading a recorded sequence from disk or computing pieces on
+ * demand. Only the pieces actually dealt are ever read, so the sequence
+ * may be far longer than would fit in memory, or infinite.
+ *
+ * Pieces are remembered in small chunks shared by a generator and its
+ * copies, so a copy deals the same pieces without reading the iterator
+ * again. A chunk is released once no generator is positioned in or before
+ * it. Copies may be used from different threads.
+ *
+ * The iterator must not run out while a game is being played; if it does,
+ * next() throws java.util.NoSuchElementException.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class StreamPieceGenerator implements PieceGenerator {
+
+    /**
+     * The number of pieces in each chunk.
+     */
+    private static final int CHUNK_SIZE = 64;
+
+    /**
+     * The source of the pieces, shared with all copies.
+     */
+    private final Iterator<TetrisPiece> mySource;
+
+    /**
+     * The chunk holding the next piece to deal.
+     */
+    private Chunk myChunk;
+
+    /**
+     * The index of the next piece to deal in the chunk.
+     */
+    private int myIndex;
+
+    /**
+     * Constructs a generator that pulls its pieces from an iterator.
+     *
+     * @param theSource the source of the pieces.
+     */
+    public StreamPieceGenerator(final Iterator<TetrisPiece> theSource) {
+        this(theSource, new Chunk(), 0);
+    }
+
+    /**
+     * Constructs a generator positioned in a shared chunk.
+     *
+     * @param theSource the source of the pieces.
+     * @param theChunk the chunk holding the next piece.
+     * @param theIndex the index of the next piece in the chunk.
+     */
+    private StreamPieceGenerator(final Iterator<TetrisPiece> theSource,
+                                 final Chunk theChunk, final int theIndex) {
+        mySource = theSource;
+        myChunk = theChunk;
+        myIndex = theIndex;
+    }
+
+    @Override
+    public TetrisPiece next() {
+        synchronized (mySource) {
+            if (myIndex == CHUNK_SIZE) {
+                if (myChunk.myNext == null) {
+                    myChunk.myNext = new Chunk();
+                }
+                myChunk = myChunk.myNext;
+                myIndex = 0;
+            }
+            if (myIndex == myChunk.myCount) {
+                myChunk.myPieces[myIndex] = mySource.next();
+                myChunk.myCount++;
+            }
+            final TetrisPiece result = myChunk.myPieces[myIndex];
+            myIndex++;
+            return result;
+        }
+    }
+
+    @Override
+    public PieceGenerator copy() {
+        synchronized (mySource) {
+            return new StreamPieceGenerator(mySource, myChunk, myIndex);
+        }
+    }
+
+    /**
+     * A run of pieces already read from the source.
+     */
+    private static final class Chunk {
+
+        /**
+         * The pieces read into this chunk.
+         */
+        private final TetrisPiece[] myPieces = new TetrisPiece[CHUNK_SIZE];
+
+        /**
+         * The number of pieces read into this chunk.
+         */
+        private int myCount;
+
+        /**
+         * The following chunk, or null if it has not been started.
+         */
+        private Chunk myNext;
+    }
+}
@@ -7,7 +7,7 @@
 package model;
 
 import java.awt.Color;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Enumeration of the TetrisPiece types.
@@ -19,46 +19,39 @@ public enum TetrisPiece {
 
     /** The 'I' TetrisPiece. */
     I(4, 1,
-      Color.CYAN,
+      0x00FFFF, // cyan
       new Point(0, 2), new Point(1, 2), new Point(2, 2), new Point(3, 2)),
 
     /** The 'J' TetrisPiece. */
     J(3, 2,
-      Color.BLUE,
+      0x0000FF, // blue
       new Point(0, 2), new Point(0, 1), new Point(1, 1), new Point(2, 1)),
 
     /** The 'L' TetrisPiece. */
     L(3, 2,
-      new Color(233, 164, 0), //Color.ORANGE,
+      0xE9A400, // orange, darker than Color.ORANGE
       new Point(2, 2), new Point(0, 1), new Point(1, 1), new Point(2, 1)),
 
     /** The 'O' TetrisPiece. */
     O(3, 2,
-      Color.YELLOW,
+      0xFFFF00, // yellow
       new Point(1, 2), new Point(2, 2), new Point(1, 1), new Point(2, 1)),
 
     /** The 'S' TetrisPiece. */
     S(3, 2,
-      Color.GREEN,
+      0x00FF00, // green
       new Point(1, 2), new Point(2, 2), new Point(0, 1), new Point(1, 1)),
 
     /** The 'T' TetrisPiece. */
     T(3, 2,
-      new Color(185, 33, 255), //Color.MAGENTA.darker().darker(),
+      0xB921FF, // purple, rather than Color.MAGENTA.darker().darker()
       new Point(1, 2), new Point(0, 1), new Point(1, 1), new Point(2, 1)),
 
     /** The 'Z' TetrisPiece. */
     Z(3, 2,
-      Color.RED,
+      0xFF0000, // red
       new Point(0, 2), new Point(1, 2), new Point(1, 1), new Point(2, 1));
 
-    
-    // Other class constants
-
-    /**
-     * A Random Object.
-     */
-    private static final Random RANDOM = new Random();
 
     
     // instance fields
@@ -78,23 +71,23 @@ public enum TetrisPiece {
     private final Point[] myPoints;
 
     /**
-     * Color of the TetrisPiece.
+     * The RGB value of the color of the TetrisPiece.
      */
-    private final Color myColor;
+    private final int myRgb;
 
     /**
      * The TetrisPiece constructor.
      * 
      * @param theWidth width of the TetrisPiece.
      * @param theHeight height of the TetrisPiece.
-     * @param theColor Color of the TetrisPiece.
+     * @param theRgb RGB value of the color of the TetrisPiece.
      * @param thePoints the initial position of the blocks of the TetrisPiece.
      */
-    private TetrisPiece(final int theWidth, final int theHeight, final Color theColor,
+    private TetrisPiece(final int theWidth, final int theHeight, final int theRgb,
                         final Point... thePoints) {
         myWidth = theWidth;
         myHeight = theHeight;
-        myColor = theColor;
+        myRgb = theRgb;
         myPoints = thePoints.clone();
     }
 
@@ -119,10 +112,42 @@ public enum TetrisPiece {
     /**
      * Return the color of the TetrisPiece.
      * 
+     * The Color objects are created on first use, so headless code that
+     * never asks for a color does not load AWT.
+     * 
      * @return The color of the TetrisPiece.
      */
     public Color getColor() {
-        return myColor;
+        return Palette.COLORS[ordinal()];
+    }
+
+    /**
+     * Return the RGB value of the color of the TetrisPiece.
+     * 
+     * @return The RGB value of the color of the TetrisPiece.
+     */
+    public int getRgb() {
+        return myRgb;
+    }
+
+    /**
+     * Return the palette index of the TetrisPiece, used to record the
+     * color of frozen blocks. Index 0 is reserved for empty cells.
+     * 
+     * @return the palette index of the TetrisPiece, from 1 to 7.
+     */
+    public int getPaletteIndex() {
+        return ordinal() + 1;
+    }
+
+    /**
+     * Get the TetrisPiece with a palette index.
+     * 
+     * @param theIndex a palette index, from 1 to 7.
+     * @return the TetrisPiece with that palette index.
+     */
+    public static TetrisPiece fromPaletteIndex(final int theIndex) {
+        return values()[theIndex - 1];
     }
     
     /**
@@ -137,9 +162,48 @@ public enum TetrisPiece {
     /**
      * Get a random TetrisPiece.
      * 
+     * Uses the calling thread's own random generator, so concurrent callers
+     * do not contend. Games use their own PieceGenerator instead.
+     * 
      * @return a random TetrisPiece.
      */
     public static TetrisPiece getRandomPiece() {
-        return values()[RANDOM.nextInt(values().length)];
+        return values()[ThreadLocalRandom.current().nextInt(values().length)];
+    }
+
+    
+    // Inner classes
+
+    /**
+     * Holds the Color of each TetrisPiece, indexed by ordinal.
+     * The holder is only initialized when a color is first requested.
+     */
+    private static final class Palette {
+
+        /**
+         * The colors of the TetrisPieces.
+         */
+        private static final Color[] COLORS = createColors();
+
+        /**
+         * Private constructor to inhibit instantiation.
+         */
+        private Palette() {
+            // do nothing
+        }
+
+        /**
+         * Creates the colors of the TetrisPieces from their RGB values.
+         * 
+         * @return the colors, indexed by ordinal.
+         */
+        private static Color[] createColors() {
+            final TetrisPiece[] pieces = values();
+            final Color[] colors = new Color[pieces.length];
+            for (final TetrisPiece piece : pieces) {
+                colors[piece.ordinal()] = new Color(piece.myRgb);
+            }
+            return colors;
+        }
     }
 }
@@ -0,0 +1,57 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+/**
+ * A PieceGenerator that chooses each piece independently and uniformly
+ * at random, like the classic game.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class UniformPieceGenerator implements PieceGenerator {
+
+    /**
+     * The TetrisPiece types.
+     */
+    private static final TetrisPiece[] PIECES = TetrisPiece.values();
+
+    /**
+     * The source of randomness.
+     */
+    private final SplitMix myRandom;
+
+    /**
+     * Constructs a generator with the given seed.
+     * Generators with equal seeds produce equal sequences.
+     *
+     * @param theSeed the seed.
+     */
+    public UniformPieceGenerator(final long theSeed) {
+        myRandom = new SplitMix(theSeed);
+    }
+
+    @Override
+    public TetrisPiece next() {
+        return PIECES[myRandom.nextInt(PIECES.length)];
+    }
+
+    /**
+     * Returns the state of the generator; a generator constructed with it
+     * as the seed continues the same sequence.
+     *
+     * @return the state.
+     */
+    long getState() {
+        return myRandom.getState();
+    }
+
+    @Override
+    public PieceGenerator copy() {
+        return new UniformPieceGenerator(myRandom.getState());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes variable length integers: seven bits per byte, least
+ * significant group first, with the high bit of each byte set when more
+ * bytes follow. Small values take a single byte. Signed values are first
+ * zigzag encoded so that small negative values stay small.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class Varint {
+
+    /**
+     * The most bytes a 64 bit value takes.
+     */
+    public static final int MAX_BYTES = 10;
+
+    /**
+     * The bits of value in each byte.
+     */
+    private static final int GROUP_BITS = 7;
+
+    /**
+     * The mask of the value bits of a byte.
+     */
+    private static final int GROUP_MASK = 0x7F;
+
+    /**
+     * The bit marking that more bytes follow.
+     */
+    private static final int MORE = 0x80;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Varint() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Writes an unsigned value.
+     *
+     * @param theBuffer the buffer to write to.
+     * @param theValue the value, taken as unsigned.
+     * @throws java.nio.BufferOverflowException if the buffer is full.
+     */
+    public static void putUnsigned(final ByteBuffer theBuffer, final long theValue) {
+        long value = theValue;
+        while ((value & ~GROUP_MASK) != 0L) {
+            theBuffer.put((byte) (value & GROUP_MASK | MORE));
+            value >>>= GROUP_BITS;
+        }
+        theBuffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned value.
+     *
+     * @param theBuffer the buffer to read from.
+     * @return the value.
+     * @throws StreamCorruptedException if the value is longer than
+     *         MAX_BYTES.
+     * @throws java.nio.BufferUnderflowException if the buffer ends first.
+     */
+    public static long getUnsigned(final ByteBuffer theBuffer)
+        throws StreamCorruptedException {
+        long result = 0L;
+        int shift = 0;
+        int b;
+        do {
+            if (shift >= Long.SIZE) {
+                throw new StreamCorruptedException("Varint too long");
+            }
+            b = theBuffer.get();
+            result |= (long) (b & GROUP_MASK) << shift;
+            shift += GROUP_BITS;
+        } while ((b & MORE) != 0);
+        return result;
+    }
+
+    /**
+     * Writes a signed value.
+     *
+     * @param theBuffer the buffer to write to.
+     * @param theValue the value.
+     * @throws java.nio.BufferOverflowException if the buffer is full.
+     */
+    public static void putSigned(final ByteBuffer theBuffer, final long theValue) {
+        putUnsigned(theBuffer, theValue << 1 ^ theValue >> (Long.SIZE - 1));
+    }
+
+    /**
+     * Reads a signed value.
+     *
+     * @param theBuffer the buffer to read from.
+     * @return the value.
+     * @throws StreamCorruptedException if the value is longer than
+     *         MAX_BYTES.
+     * @throws java.nio.BufferUnderflowException if the buffer ends first.
+     */
+    public static long getSigned(final ByteBuffer theBuffer)
+        throws StreamCorruptedException {
+        final long value = getUnsigned(theBuffer);
+        return value >>> 1 ^ -(value & 1L);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model;
+
+/**
+ * The random keys of the Zobrist hash of a game position.
+ *
+ * Every board cell and every placement of an active piece has a fixed
+ * pseudo random 64 bit key, derived from its coordinates with the SplitMix
+ * finalizer. The hash of a position is the exclusive or of the keys of its
+ * occupied cells and of its active piece, so it can be updated one cell at
+ * a time. The keys depend only on the coordinates, so equal positions on
+ * different boards of the same size have equal hashes.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+final class Zobrist {
+
+    /**
+     * Separates the cell keys from the piece keys.
+     */
+    private static final long CELL_SALT = 0x5A0B_C3F1_2E47_9D61L;
+
+    /**
+     * Separates the piece keys from the cell keys.
+     */
+    private static final long PIECE_SALT = 0x1F83_D9AB_5BE0_CD19L;
+
+    /**
+     * The columns reserved for each row when numbering cells.
+     */
+    private static final int ROW_STRIDE = Long.SIZE;
+
+    /**
+     * The bits reserved for each coordinate of a piece position.
+     */
+    private static final int COORDINATE_BITS = 16;
+
+    /**
+     * The mask of one coordinate of a piece position.
+     */
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Zobrist() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Returns the key of an occupied cell.
+     *
+     * @param theColumn the column of the cell.
+     * @param theRow the row of the cell.
+     * @return the key of the cell.
+     */
+    static long cellKey(final int theColumn, final int theRow) {
+        return SplitMix.mix(CELL_SALT + (long) theRow * ROW_STRIDE + theColumn);
+    }
+
+    /**
+     * Returns the exclusive or of the keys of the occupied cells of a row.
+     *
+     * @param theKeys the cell keys of the board, row by row.
+     * @param theWidth the width of the board.
+     * @param theRow the row.
+     * @param theMask the occupancy mask of the row.
+     * @return the hash of the row.
+     */
+    static long rowHash(final long[] theKeys, final int theWidth,
+                        final int theRow, final long theMask) {
+        long result = 0L;
+        long mask = theMask;
+        while (mask != 0L) {
+            result ^= theKeys[theRow * theWidth + Long.numberOfTrailingZeros(mask)];
+            mask &= mask - 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key of an active piece.
+     *
+     * @param thePiece the active piece, or null.
+     * @return the key of the piece, or 0 for no piece.
+     */
+    static long pieceKey(final MovableTetrisPiece thePiece) {
+        long result = 0L;
+        if (thePiece != null) {
+            long packed = thePiece.getTetrisPiece().ordinal();
+            packed = packed << COORDINATE_BITS | thePiece.getRotation().ordinal();
+            packed = packed << COORDINATE_BITS
+                            | thePiece.getPosition().x() & COORDINATE_MASK;
+            packed = packed << COORDINATE_BITS
+                            | thePiece.getPosition().y() & COORDINATE_MASK;
+            result = SplitMix.mix(PIECE_SALT + packed);
+        }
+        return result;
+    }
+}
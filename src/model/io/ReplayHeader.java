@@ -0,0 +1,330 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.io;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import model.BagPieceGenerator;
+import model.Board;
+import model.GameCore;
+import model.TetrisPiece;
+import model.UniformPieceGenerator;
+import model.Varint;
+
+/**
+ * The start of a replay: the board size and where the pieces come from,
+ * either a seeded generator or a fixed piece sequence. Together with the
+ * recorded actions this reproduces a game exactly.
+ *
+ * A ReplayHeader is immutable.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class ReplayHeader {
+
+    /**
+     * The first four bytes of a replay: "TRPL".
+     */
+    static final int MAGIC = 0x5452504C;
+
+    /**
+     * The version of the replay format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The most bytes a header takes, not counting its piece sequence: the
+     * magic number, version and source bytes, and three varints.
+     */
+    private static final int FIXED_BYTES = 36;
+
+    /**
+     * The kinds of piece source.
+     */
+    public enum Source {
+        /** A UniformPieceGenerator. */
+        UNIFORM,
+        /** A BagPieceGenerator. */
+        BAG,
+        /** A fixed piece sequence. */
+        SEQUENCE
+    }
+
+    /**
+     * The width of the board.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the board.
+     */
+    private final int myHeight;
+
+    /**
+     * The kind of piece source.
+     */
+    private final Source mySource;
+
+    /**
+     * The generator seed, for UNIFORM and BAG.
+     */
+    private final long mySeed;
+
+    /**
+     * The piece sequence, for SEQUENCE.
+     */
+    private final List<TetrisPiece> mySequence;
+
+    /**
+     * Constructs a header.
+     *
+     * @param theWidth the width of the board.
+     * @param theHeight the height of the board.
+     * @param theSource the kind of piece source.
+     * @param theSeed the generator seed.
+     * @param theSequence the piece sequence.
+     */
+    private ReplayHeader(final int theWidth, final int theHeight, final Source theSource,
+                         final long theSeed, final List<TetrisPiece> theSequence) {
+        myWidth = theWidth;
+        myHeight = theHeight;
+        mySource = theSource;
+        mySeed = theSeed;
+        mySequence = theSequence;
+    }
+
+    /**
+     * Returns a header for games dealt by a UniformPieceGenerator.
+     *
+     * @param theWidth the width of the board.
+     * @param theHeight the height of the board.
+     * @param theSeed the generator seed.
+     * @return the header.
+     */
+    public static ReplayHeader uniform(final int theWidth, final int theHeight,
+                                       final long theSeed) {
+        return new ReplayHeader(theWidth, theHeight, Source.UNIFORM, theSeed,
+                                Collections.<TetrisPiece>emptyList());
+    }
+
+    /**
+     * Returns a header for games dealt by a BagPieceGenerator.
+     *
+     * @param theWidth the width of the board.
+     * @param theHeight the height of the board.
+     * @param theSeed the generator seed.
+     * @return the header.
+     */
+    public static ReplayHeader bag(final int theWidth, final int theHeight,
+                                   final long theSeed) {
+        return new ReplayHeader(theWidth, theHeight, Source.BAG, theSeed,
+                                Collections.<TetrisPiece>emptyList());
+    }
+
+    /**
+     * Returns a header for games dealt from a fixed piece sequence.
+     *
+     * @param theWidth the width of the board.
+     * @param theHeight the height of the board.
+     * @param theSequence the non empty piece sequence; it is copied.
+     * @return the header.
+     */
+    public static ReplayHeader sequence(final int theWidth, final int theHeight,
+                                        final List<TetrisPiece> theSequence) {
+        if (theSequence.isEmpty()) {
+            throw new IllegalArgumentException("theSequence must not be empty");
+        }
+        return new ReplayHeader(theWidth, theHeight, Source.SEQUENCE, 0L,
+                                Collections.unmodifiableList(
+                                    new ArrayList<TetrisPiece>(theSequence)));
+    }
+
+    /**
+     * Returns the width of the board.
+     *
+     * @return the width.
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * Returns the height of the board.
+     *
+     * @return the height.
+     */
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * Returns the kind of piece source.
+     *
+     * @return the source.
+     */
+    public Source getSource() {
+        return mySource;
+    }
+
+    /**
+     * Returns the generator seed.
+     *
+     * @return the seed, or 0 for a piece sequence.
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+
+    /**
+     * Returns the piece sequence.
+     *
+     * @return the unmodifiable sequence, empty for a generator.
+     */
+    public List<TetrisPiece> getSequence() {
+        return mySequence;
+    }
+
+    /**
+     * Creates a headless game set up as this header describes. The game
+     * has not started; the first recorded action starts it.
+     *
+     * @return the new game.
+     */
+    public GameCore createGame() {
+        final GameCore result = new GameCore(myWidth, myHeight);
+        if (mySource == Source.SEQUENCE) {
+            result.setPieceSequence(mySequence);
+        } else if (mySource == Source.BAG) {
+            result.setPieceGenerator(new BagPieceGenerator(mySeed));
+        } else {
+            result.setPieceGenerator(new UniformPieceGenerator(mySeed));
+        }
+        return result;
+    }
+
+    /**
+     * Creates a Board set up as this header describes.
+     *
+     * @return the new board.
+     */
+    public Board createBoard() {
+        final Board result = new Board(myWidth, myHeight);
+        if (mySource == Source.SEQUENCE) {
+            result.setPieceSequence(mySequence);
+        } else if (mySource == Source.BAG) {
+            result.setPieceGenerator(new BagPieceGenerator(mySeed));
+        } else {
+            result.setPieceGenerator(new UniformPieceGenerator(mySeed));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the most bytes write() can take.
+     *
+     * @return the size bound.
+     */
+    int maxBytes() {
+        return FIXED_BYTES + mySequence.size();
+    }
+
+    /**
+     * Writes this header.
+     *
+     * @param theBuffer the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public void write(final ByteBuffer theBuffer) {
+        theBuffer.putInt(MAGIC);
+        theBuffer.put((byte) VERSION);
+        Varint.putUnsigned(theBuffer, myWidth);
+        Varint.putUnsigned(theBuffer, myHeight);
+        theBuffer.put((byte) mySource.ordinal());
+        if (mySource == Source.SEQUENCE) {
+            Varint.putUnsigned(theBuffer, mySequence.size());
+            for (final TetrisPiece piece : mySequence) {
+                theBuffer.put((byte) piece.ordinal());
+            }
+        } else {
+            theBuffer.putLong(mySeed);
+        }
+    }
+
+    /**
+     * Reads a header.
+     *
+     * @param theBuffer the buffer to read from.
+     * @return the header.
+     * @throws StreamCorruptedException if the buffer does not hold a
+     *         header of a supported version.
+     * @throws java.nio.BufferUnderflowException if the buffer ends first.
+     */
+    public static ReplayHeader read(final ByteBuffer theBuffer)
+        throws StreamCorruptedException {
+        if (theBuffer.getInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a replay");
+        }
+        final int version = theBuffer.get();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported replay version " + version);
+        }
+        final int width = (int) Varint.getUnsigned(theBuffer);
+        final int height = (int) Varint.getUnsigned(theBuffer);
+        final int source = theBuffer.get();
+        ReplayHeader result;
+        if (source == Source.SEQUENCE.ordinal()) {
+            final int length = (int) Varint.getUnsigned(theBuffer);
+            final List<TetrisPiece> sequence = new ArrayList<TetrisPiece>(length);
+            for (int i = 0; i < length; i++) {
+                sequence.add(readPiece(theBuffer));
+            }
+            result = sequence(width, height, sequence);
+        } else if (source == Source.BAG.ordinal()) {
+            result = bag(width, height, theBuffer.getLong());
+        } else if (source == Source.UNIFORM.ordinal()) {
+            result = uniform(width, height, theBuffer.getLong());
+        } else {
+            throw new StreamCorruptedException("Unknown piece source " + source);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a TetrisPiece ordinal.
+     *
+     * @param theBuffer the buffer to read from.
+     * @return the piece.
+     * @throws StreamCorruptedException if the ordinal is out of range.
+     */
+    static TetrisPiece readPiece(final ByteBuffer theBuffer)
+        throws StreamCorruptedException {
+        final int ordinal = theBuffer.get();
+        if (ordinal < 0 || ordinal >= TetrisPiece.values().length) {
+            throw new StreamCorruptedException("Unknown piece " + ordinal);
+        }
+        return TetrisPiece.values()[ordinal];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(64);
+        sb.append("ReplayHeader[").append(myWidth).append(" x ").append(myHeight)
+            .append(", ").append(mySource);
+        if (mySource == Source.SEQUENCE) {
+            sb.append(' ').append(mySequence);
+        } else {
+            sb.append(" seed ").append(mySeed);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+}
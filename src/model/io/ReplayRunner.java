@@ -0,0 +1,324 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.GameAction;
+import model.GameCore;
+import model.Placement;
+import model.Rotation;
+import model.TetrisPiece;
+import model.Varint;
+
+/**
+ * Plays a replay written by a ReplayWriter on a headless game, as fast as
+ * the events can be decoded: there is no timer, no rendering and no
+ * listener. Every CHECKSUM event is compared with the hash of the replayed
+ * position, so a replay doubles as a regression test.
+ *
+ * While playing forward the runner keeps a keyframe, a snapshot of the
+ * game, every few thousand events. seek() restores the nearest keyframe at
+ * or before the target and replays only the events after it.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class ReplayRunner {
+
+    /**
+     * The default number of events between keyframes.
+     */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 4096;
+
+    /**
+     * The mask of the rotation bits of a placement byte.
+     */
+    private static final int ROTATION_MASK = (1 << ReplayWriter.ROTATION_BITS) - 1;
+
+    /**
+     * The replay, positioned at the next event.
+     */
+    private final ByteBuffer myReplay;
+
+    /**
+     * The header of the replay.
+     */
+    private final ReplayHeader myHeader;
+
+    /**
+     * The game the replay is played on.
+     */
+    private final GameCore myGame;
+
+    /**
+     * The number of events between keyframes.
+     */
+    private final int myInterval;
+
+    /**
+     * The keyframes taken so far; keyframe i is at event i * myInterval.
+     */
+    private final List<Keyframe> myKeyframes;
+
+    /**
+     * The number of events played.
+     */
+    private long myPosition;
+
+    /**
+     * The tick of the last event played.
+     */
+    private long myTick;
+
+    /**
+     * The index of the first event that did not match the game, or -1.
+     */
+    private long myFirstMismatch;
+
+    /**
+     * Constructs a runner with the default keyframe interval.
+     *
+     * @param theReplay the replay; its position is not changed.
+     * @throws IOException if the replay header cannot be read.
+     */
+    public ReplayRunner(final ByteBuffer theReplay) throws IOException {
+        this(theReplay, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Constructs a runner.
+     *
+     * @param theReplay the replay; its position is not changed.
+     * @param theInterval the number of events between keyframes.
+     * @throws IOException if the replay header cannot be read.
+     */
+    public ReplayRunner(final ByteBuffer theReplay, final int theInterval)
+        throws IOException {
+        if (theInterval < 1) {
+            throw new IllegalArgumentException("theInterval must be positive");
+        }
+        myReplay = theReplay.duplicate();
+        try {
+            myHeader = ReplayHeader.read(myReplay);
+        } catch (final BufferUnderflowException e) {
+            throw new EOFException("Truncated replay header");
+        }
+        myGame = myHeader.createGame();
+        myInterval = theInterval;
+        myKeyframes = new ArrayList<Keyframe>();
+        myFirstMismatch = -1;
+    }
+
+    /**
+     * Opens a replay file, mapping it into memory.
+     *
+     * @param theFile the replay file.
+     * @return a runner for the replay.
+     * @throws IOException if the file cannot be read or is not a replay.
+     */
+    public static ReplayRunner open(final Path theFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(theFile, StandardOpenOption.READ)) {
+            return new ReplayRunner(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                                channel.size()));
+        }
+    }
+
+    /**
+     * Returns the header of the replay.
+     *
+     * @return the header.
+     */
+    public ReplayHeader getHeader() {
+        return myHeader;
+    }
+
+    /**
+     * Returns the game the replay is played on, at the current position.
+     *
+     * @return the game.
+     */
+    public GameCore getGame() {
+        return myGame;
+    }
+
+    /**
+     * Returns the number of events played.
+     *
+     * @return the current position.
+     */
+    public long getPosition() {
+        return myPosition;
+    }
+
+    /**
+     * Returns the first event that did not match the game: a checksum
+     * that differed from the position hash, or a placement the current
+     * piece could not take.
+     *
+     * @return the index of the event, or -1 if every event matched.
+     */
+    public long getFirstMismatch() {
+        return myFirstMismatch;
+    }
+
+    /**
+     * Tests whether there are more events.
+     *
+     * @return true if the replay has events after the current position.
+     */
+    public boolean hasNext() {
+        return myReplay.hasRemaining();
+    }
+
+    /**
+     * Plays the next event.
+     *
+     * @throws IOException if the event is truncated or malformed.
+     */
+    public void next() throws IOException {
+        if (myPosition % myInterval == 0 && myKeyframes.size() == myPosition / myInterval) {
+            myKeyframes.add(new Keyframe(myReplay.position(), myTick, myGame.snapshot()));
+        }
+        try {
+            final long event = Varint.getUnsigned(myReplay);
+            final int code = (int) (event & ReplayWriter.CODE_MASK);
+            myTick += event >>> ReplayWriter.CODE_BITS;
+            if (code < ReplayWriter.PLACE) {
+                GameAction.values()[code].apply(myGame);
+                if (code == GameAction.NEW_GAME.ordinal()) {
+                    myTick = 0L;
+                }
+            } else if (code == ReplayWriter.PLACE) {
+                place();
+            } else if (code == ReplayWriter.CHECKSUM) {
+                if (myReplay.getLong() != myGame.getHash()) {
+                    mismatch();
+                }
+            } else {
+                throw new StreamCorruptedException("Unknown event code " + code);
+            }
+        } catch (final BufferUnderflowException e) {
+            throw new EOFException("Truncated event " + myPosition);
+        }
+        myPosition++;
+    }
+
+    /**
+     * Plays every remaining event.
+     *
+     * @return true if every event so far matched the game.
+     * @throws IOException if an event is truncated or malformed.
+     */
+    public boolean runToEnd() throws IOException {
+        while (hasNext()) {
+            next();
+        }
+        return myFirstMismatch < 0;
+    }
+
+    /**
+     * Moves to a position in the replay: the game is left as it was after
+     * the given number of events. Only the events after the nearest
+     * keyframe are replayed.
+     *
+     * @param theEvent the number of events to have played.
+     * @throws IOException if the replay has fewer events, or an event is
+     *         truncated or malformed.
+     */
+    public void seek(final long theEvent) throws IOException {
+        final int keyframe = (int) Math.min(theEvent / myInterval, myKeyframes.size() - 1);
+        if (keyframe >= 0
+            && (theEvent < myPosition || (long) keyframe * myInterval > myPosition)) {
+            final Keyframe frame = myKeyframes.get(keyframe);
+            myGame.restore(frame.mySnapshot);
+            myReplay.position(frame.myOffset);
+            myTick = frame.myTick;
+            myPosition = (long) keyframe * myInterval;
+        }
+        while (myPosition < theEvent) {
+            if (!hasNext()) {
+                throw new EOFException("The replay has only " + myPosition + " events");
+            }
+            next();
+        }
+    }
+
+    /**
+     * Plays a PLACE event.
+     *
+     * @throws StreamCorruptedException if the event is malformed.
+     */
+    private void place() throws StreamCorruptedException {
+        final int packed = Byte.toUnsignedInt(myReplay.get());
+        final int ordinal = packed >>> ReplayWriter.ROTATION_BITS;
+        if (ordinal >= TetrisPiece.values().length) {
+            throw new StreamCorruptedException("Unknown piece " + ordinal);
+        }
+        final TetrisPiece piece = TetrisPiece.values()[ordinal];
+        final Rotation rotation = Rotation.values()[packed & ROTATION_MASK];
+        final int x = (int) Varint.getSigned(myReplay);
+        final int y = (int) Varint.getSigned(myReplay);
+        try {
+            myGame.place(new Placement(piece, rotation, x, y));
+        } catch (final IllegalArgumentException e) {
+            mismatch();
+        }
+    }
+
+    /**
+     * Records a mismatch at the current event.
+     */
+    private void mismatch() {
+        if (myFirstMismatch < 0) {
+            myFirstMismatch = myPosition;
+        }
+    }
+
+    /**
+     * A snapshot of the game at a keyframe.
+     */
+    private static final class Keyframe {
+
+        /**
+         * The offset in the replay of the next event.
+         */
+        private final int myOffset;
+
+        /**
+         * The tick of the last event played.
+         */
+        private final long myTick;
+
+        /**
+         * The state of the game.
+         */
+        private final GameCore.Snapshot mySnapshot;
+
+        /**
+         * Constructs a keyframe.
+         *
+         * @param theOffset the offset in the replay of the next event.
+         * @param theTick the tick of the last event played.
+         * @param theSnapshot the state of the game.
+         */
+        Keyframe(final int theOffset, final long theTick, final GameCore.Snapshot theSnapshot) {
+            myOffset = theOffset;
+            myTick = theTick;
+            mySnapshot = theSnapshot;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.GameAction;
+import model.GameRecorder;
+import model.Placement;
+import model.Varint;
+
+/**
+ * Records the actions of a game as a compact binary replay.
+ *
+ * A replay is a ReplayHeader followed by one event per action. An event
+ * is a varint holding the ticks since the previous event shifted left by
+ * four bits, or'ed with the action code (the GameAction ordinal, or
+ * PLACE). A PLACE event is followed by one byte holding the TetrisPiece
+ * ordinal shifted left by two bits or'ed with the Rotation ordinal, and
+ * by the signed x and y of the placement. A CHECKSUM event is followed by
+ * the eight byte hash of the position at that point, so a replay can be
+ * verified. Most events take a single byte.
+ *
+ * Events are encoded into a buffer on the game thread. Each full buffer
+ * is handed to a drain executor that writes it to the channel, so the
+ * game never waits for the disk; the writes of one replay are chained so
+ * they reach the channel in order even on a multithreaded executor. By
+ * default all replays share one daemon drain thread.
+ *
+ * A writer has at most MAX_IN_FLIGHT buffers waiting for the drain; when
+ * the drain falls further behind, for example with many games recording
+ * at once, the game thread waits for the oldest buffer to be written, so
+ * memory stays bounded. Once a write has failed, the next event throws an
+ * UncheckedIOException rather than queueing more buffers.
+ *
+ * A ReplayWriter is used by one game thread.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class ReplayWriter implements GameRecorder, Closeable {
+
+    /**
+     * The event code of a placement.
+     */
+    static final int PLACE = GameAction.values().length;
+
+    /**
+     * The event code of a position checksum.
+     */
+    static final int CHECKSUM = PLACE + 1;
+
+    /**
+     * The bits of an event holding the code.
+     */
+    static final int CODE_BITS = 4;
+
+    /**
+     * The mask of the code bits.
+     */
+    static final int CODE_MASK = (1 << CODE_BITS) - 1;
+
+    /**
+     * The bits of a placement byte holding the rotation.
+     */
+    static final int ROTATION_BITS = 2;
+
+    /**
+     * The size of each buffer handed to the drain.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The most bytes one event takes.
+     */
+    private static final int MAX_EVENT_BYTES = 3 * Varint.MAX_BYTES + 1;
+
+    /**
+     * The most buffers handed to the drain and not yet written.
+     */
+    private static final int MAX_IN_FLIGHT = 8;
+
+    /**
+     * The channel the replay is written to.
+     */
+    private final WritableByteChannel myChannel;
+
+    /**
+     * The executor writing full buffers.
+     */
+    private final Executor myDrain;
+
+    /**
+     * The buffer being filled.
+     */
+    private ByteBuffer myBuffer;
+
+    /**
+     * Completes when every buffer handed to the drain has been written.
+     */
+    private CompletableFuture<Void> myPending;
+
+    /**
+     * The writes of the buffers handed to the drain that may not have
+     * finished, oldest first.
+     */
+    private final Deque<CompletableFuture<Void>> myInFlight;
+
+    /**
+     * The tick of the previous event.
+     */
+    private long myLastTick;
+
+    /**
+     * Whether the writer has been closed.
+     */
+    private boolean myClosed;
+
+    /**
+     * Constructs a writer on the shared drain thread.
+     *
+     * @param theChannel the channel to write to; closed by close().
+     * @param theHeader the header of the replay.
+     */
+    public ReplayWriter(final WritableByteChannel theChannel, final ReplayHeader theHeader) {
+        this(theChannel, theHeader, SharedDrain.EXECUTOR);
+    }
+
+    /**
+     * Constructs a writer on a given drain executor.
+     *
+     * @param theChannel the channel to write to; closed by close().
+     * @param theHeader the header of the replay.
+     * @param theDrain the executor writing full buffers.
+     */
+    public ReplayWriter(final WritableByteChannel theChannel, final ReplayHeader theHeader,
+                        final Executor theDrain) {
+        myChannel = theChannel;
+        myDrain = theDrain;
+        myPending = CompletableFuture.completedFuture(null);
+        myInFlight = new ArrayDeque<CompletableFuture<Void>>();
+        myBuffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, theHeader.maxBytes()));
+        theHeader.write(myBuffer);
+    }
+
+    @Override
+    public void actionPerformed(final long theTick, final GameAction theAction) {
+        putEvent(theTick, theAction.ordinal());
+        if (theAction == GameAction.NEW_GAME) {
+            myLastTick = 0L;
+        }
+    }
+
+    @Override
+    public void piecePlaced(final long theTick, final Placement thePlacement) {
+        putEvent(theTick, PLACE);
+        myBuffer.put((byte) (thePlacement.getTetrisPiece().ordinal() << ROTATION_BITS
+                             | thePlacement.getRotation().ordinal()));
+        Varint.putSigned(myBuffer, thePlacement.getX());
+        Varint.putSigned(myBuffer, thePlacement.getY());
+    }
+
+    /**
+     * Records the hash of the current position, for example at the end of
+     * a game, so a ReplayRunner can verify that it reproduces the game.
+     *
+     * @param theTick the tick of the game.
+     * @param theHash the position hash, from GameCore.getHash().
+     */
+    public void writeChecksum(final long theTick, final long theHash) {
+        putEvent(theTick, CHECKSUM);
+        myBuffer.putLong(theHash);
+    }
+
+    /**
+     * Hands the buffered events to the drain. Waits only if more than
+     * MAX_IN_FLIGHT buffers would then be waiting to be written.
+     *
+     * @throws UncheckedIOException if an earlier write failed.
+     */
+    public void flush() {
+        checkWrites();
+        if (myBuffer.position() > 0) {
+            final ByteBuffer full = myBuffer;
+            full.flip();
+            myPending = myPending.thenRunAsync(() -> writeFully(full), myDrain);
+            myInFlight.add(myPending);
+            myBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (!myInFlight.isEmpty() && myInFlight.peek().isDone()) {
+                myInFlight.poll();
+            }
+            if (myInFlight.size() > MAX_IN_FLIGHT) {
+                await(myInFlight.poll());
+            }
+        }
+    }
+
+    /**
+     * Writes the remaining events, waits for the drain to finish and
+     * closes the channel.
+     *
+     * @throws IOException if any write failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!myClosed) {
+            myClosed = true;
+            try {
+                flush();
+                await(myPending);
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                myChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Encodes an event, first handing a nearly full buffer to the drain.
+     *
+     * @param theTick the tick of the event.
+     * @param theCode the event code.
+     * @throws UncheckedIOException if an earlier write failed.
+     */
+    private void putEvent(final long theTick, final int theCode) {
+        if (myClosed) {
+            throw new IllegalStateException("The replay is closed");
+        }
+        checkWrites();
+        if (myBuffer.remaining() < MAX_EVENT_BYTES) {
+            flush();
+        }
+        Varint.putUnsigned(myBuffer, (theTick - myLastTick) << CODE_BITS | theCode);
+        myLastTick = theTick;
+    }
+
+    /**
+     * Throws the failure of the last write handed to the drain, if it has
+     * already failed. A failed write fails every write chained after it.
+     *
+     * @throws UncheckedIOException if a write failed.
+     */
+    private void checkWrites() {
+        if (myPending.isCompletedExceptionally()) {
+            await(myPending);
+        }
+    }
+
+    /**
+     * Waits for a write handed to the drain to finish.
+     *
+     * @param theWrite the write.
+     * @throws UncheckedIOException if the write failed.
+     */
+    private static void await(final CompletableFuture<Void> theWrite) {
+        try {
+            theWrite.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a whole buffer to the channel. Runs on the drain.
+     *
+     * @param theBuffer the buffer.
+     */
+    private void writeFully(final ByteBuffer theBuffer) {
+        try {
+            while (theBuffer.hasRemaining()) {
+                myChannel.write(theBuffer);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Holds the shared drain thread, created on first use.
+     */
+    private static final class SharedDrain {
+
+        /**
+         * The shared drain executor.
+         */
+        private static final ExecutorService EXECUTOR =
+                        Executors.newSingleThreadExecutor(theTask -> {
+                            final Thread thread = new Thread(theTask, "replay-drain");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+
+        /**
+         * Private constructor to prevent instantiation.
+         */
+        private SharedDrain() {
+            // do nothing
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.search;
+
+import java.util.Arrays;
+
+import model.GameCore;
+
+/**
+ * Scores a position as a weighted sum of four features:
+ *
+ * - the aggregate height: the sum of the column heights
+ * - the number of holes
+ * - the bumpiness: the sum of the height differences of adjacent columns
+ * - the number of lines the move cleared
+ *
+ * Higher scores are better, so the first three weights are normally
+ * negative and the last positive.
+ *
+ * An Evaluator is immutable.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class Evaluator {
+
+    /**
+     * The index of the aggregate height weight.
+     */
+    public static final int HEIGHT = 0;
+
+    /**
+     * The index of the holes weight.
+     */
+    public static final int HOLES = 1;
+
+    /**
+     * The index of the bumpiness weight.
+     */
+    public static final int BUMPINESS = 2;
+
+    /**
+     * The index of the lines weight.
+     */
+    public static final int LINES = 3;
+
+    /**
+     * The number of weights.
+     */
+    public static final int FEATURES = 4;
+
+    /**
+     * Weights that play well on a standard board, found by an earlier
+     * training run.
+     */
+    public static final Evaluator DEFAULT =
+                    new Evaluator(-0.510066, -0.35663, -0.184483, 0.760666);
+
+    /**
+     * The weights, indexed by feature.
+     */
+    private final double[] myWeights;
+
+    /**
+     * Constructs an Evaluator from the weight of each feature.
+     *
+     * @param theHeight the weight of the aggregate height.
+     * @param theHoles the weight of the number of holes.
+     * @param theBumpiness the weight of the bumpiness.
+     * @param theLines the weight of the lines cleared.
+     */
+    public Evaluator(final double theHeight, final double theHoles,
+                     final double theBumpiness, final double theLines) {
+        this(new double[] {theHeight, theHoles, theBumpiness, theLines});
+    }
+
+    /**
+     * Constructs an Evaluator from an array of weights.
+     *
+     * @param theWeights the weights, indexed by HEIGHT, HOLES, BUMPINESS
+     *        and LINES.
+     * @throws IllegalArgumentException if there are not exactly FEATURES
+     *         weights.
+     */
+    public Evaluator(final double[] theWeights) {
+        if (theWeights.length != FEATURES) {
+            throw new IllegalArgumentException("Expected " + FEATURES + " weights");
+        }
+        myWeights = theWeights.clone();
+    }
+
+    /**
+     * Returns the weights.
+     *
+     * @return a new array of weights, indexed by feature.
+     */
+    public double[] getWeights() {
+        return myWeights.clone();
+    }
+
+    /**
+     * Scores the frozen blocks of a game, leaving out the lines feature.
+     * The result depends only on the occupied cells, so it can be cached
+     * by the frozen hash of the game.
+     *
+     * @param theGame the game.
+     * @return the score of the board.
+     */
+    public double evaluateBoard(final GameCore theGame) {
+        int height = 0;
+        int bumpiness = 0;
+        int previous = theGame.getColumnHeight(0);
+        for (int x = 0; x < theGame.getWidth(); x++) {
+            final int column = theGame.getColumnHeight(x);
+            height += column;
+            bumpiness += Math.abs(column - previous);
+            previous = column;
+        }
+        return myWeights[HEIGHT] * height
+               + myWeights[HOLES] * theGame.getHoleCount()
+               + myWeights[BUMPINESS] * bumpiness;
+    }
+
+    /**
+     * Scores a number of lines cleared.
+     *
+     * @param theLines the lines cleared.
+     * @return the score of the lines.
+     */
+    public double evaluateLines(final int theLines) {
+        return myWeights[LINES] * theLines;
+    }
+
+    /**
+     * Scores a position reached by clearing some lines.
+     *
+     * @param theGame the game.
+     * @param theLines the lines cleared on the way to the position.
+     * @return the score of the position.
+     */
+    public double evaluate(final GameCore theGame, final int theLines) {
+        return evaluateBoard(theGame) + evaluateLines(theLines);
+    }
+
+    @Override
+    public String toString() {
+        return "Evaluator" + Arrays.toString(myWeights);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.search;
+
+import java.util.List;
+
+import model.GameCore;
+import model.Placement;
+import model.simulation.MovePolicy;
+
+/**
+ * A MovePolicy that places each piece at the reachable placement with the
+ * best Evaluator score, one piece per tick, without looking ahead.
+ *
+ * The candidates are tried one after another on the policy's own copy of
+ * the game, on the calling thread, so the policy is cheap to create and
+ * suits batches where every game already has a thread of its own. It
+ * chooses the same placements as a MoveSearch without lookahead.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class GreedyPolicy implements MovePolicy {
+
+    /**
+     * The evaluator scoring the placements.
+     */
+    private final Evaluator myEvaluator;
+
+    /**
+     * The copy of the game the candidates are tried on, or null.
+     */
+    private GameCore myScratch;
+
+    /**
+     * The position before the current piece is placed, or null.
+     */
+    private GameCore.Snapshot myRoot;
+
+    /**
+     * Constructs a policy.
+     *
+     * @param theEvaluator the evaluator scoring the placements.
+     */
+    public GreedyPolicy(final Evaluator theEvaluator) {
+        myEvaluator = theEvaluator;
+    }
+
+    @Override
+    public void newGame(final GameCore theGame, final int theIndex) {
+        if (myScratch == null || myScratch.getWidth() != theGame.getWidth()
+            || myScratch.getHeight() != theGame.getHeight()) {
+            myScratch = new GameCore(theGame.getWidth(), theGame.getHeight());
+            myRoot = null;
+        }
+    }
+
+    @Override
+    public void act(final GameCore theGame) {
+        final List<Placement> candidates = theGame.getPlacements();
+        if (!candidates.isEmpty()) {
+            if (myRoot == null) {
+                myRoot = theGame.snapshot();
+            } else {
+                theGame.snapshot(myRoot);
+            }
+            final int lines = theGame.getLinesCleared();
+            double best = Double.NEGATIVE_INFINITY;
+            Placement choice = candidates.get(0);
+            for (final Placement candidate : candidates) {
+                myScratch.restore(myRoot);
+                myScratch.place(candidate);
+                if (!myScratch.isGameOver()) {
+                    final double score = myEvaluator.evaluate(myScratch,
+                                                              myScratch.getLinesCleared()
+                                                              - lines);
+                    if (score > best) {
+                        best = score;
+                        choice = candidate;
+                    }
+                }
+            }
+            theGame.place(choice);
+        }
+    }
+}
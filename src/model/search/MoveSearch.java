@@ -0,0 +1,448 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.search;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import model.GameCore;
+import model.Placement;
+
+/**
+ * Finds the best placement of the current piece of a game, looking ahead
+ * through the next piece.
+ *
+ * Every reachable placement of the current piece is a candidate. Each
+ * candidate is scored by the best Evaluator score over the placements of
+ * the next piece that follow it, counting the lines cleared by both moves.
+ * The candidates are searched in parallel on a fork/join pool, each on a
+ * worker thread's own copy of the game restored from a snapshot, so the
+ * game being played is never changed. Board scores are cached in a shared
+ * TranspositionTable by frozen hash, since different move orders often
+ * lead to the same board. The board size is mixed into the key, because
+ * the same cells score differently on boards of different widths and one
+ * search may serve games of several sizes.
+ *
+ * The search deepens iteratively. Every candidate is first scored on its
+ * own, which is always finished, so a move is always returned. Then, if
+ * lookahead is on and the time budget is not spent, every candidate is
+ * scored again through the next piece. The move is chosen from the
+ * deepest pass that scored every candidate: a lookahead pass cut short by
+ * the budget is thrown away whole, so candidates scored to different
+ * depths are never compared with each other.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class MoveSearch {
+
+    /**
+     * The default number of transposition table slots.
+     */
+    private static final int DEFAULT_TABLE_SIZE = 1 << 16;
+
+    /**
+     * The score of a candidate the search ran out of time for.
+     */
+    private static final double UNFINISHED = Double.NaN;
+
+    /**
+     * The odd multiplier spreading a board size over the bits of a key.
+     */
+    private static final long SIZE_MIX = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The evaluator scoring the positions.
+     */
+    private final Evaluator myEvaluator;
+
+    /**
+     * The pool running the candidate searches.
+     */
+    private final ForkJoinPool myPool;
+
+    /**
+     * The cache of board scores.
+     */
+    private final TranspositionTable myTable;
+
+    /**
+     * The copy of the game each worker thread searches on.
+     */
+    private final ThreadLocal<Worker> myWorkers;
+
+    /**
+     * The time budget of a search in nanoseconds.
+     */
+    private long myBudget;
+
+    /**
+     * Whether to look ahead through the next piece.
+     */
+    private boolean myLookahead;
+
+    /**
+     * Constructs a search on the common fork/join pool.
+     *
+     * @param theEvaluator the evaluator scoring the positions.
+     */
+    public MoveSearch(final Evaluator theEvaluator) {
+        this(theEvaluator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a search on a given fork/join pool.
+     *
+     * @param theEvaluator the evaluator scoring the positions.
+     * @param thePool the pool to search on.
+     */
+    public MoveSearch(final Evaluator theEvaluator, final ForkJoinPool thePool) {
+        myEvaluator = theEvaluator;
+        myPool = thePool;
+        myTable = new TranspositionTable(DEFAULT_TABLE_SIZE);
+        myWorkers = new ThreadLocal<Worker>();
+        myBudget = Long.MAX_VALUE;
+        myLookahead = true;
+    }
+
+    /**
+     * Sets the time budget of each search. By default there is no limit.
+     *
+     * @param theTime the budget, or Long.MAX_VALUE for no limit.
+     * @param theUnit the unit of the budget.
+     */
+    public void setTimeBudget(final long theTime, final TimeUnit theUnit) {
+        myBudget = theUnit.toNanos(theTime);
+    }
+
+    /**
+     * Sets whether the search looks ahead through the next piece.
+     * Without lookahead each candidate is scored on its own, which is
+     * much faster and much weaker. By default the search looks ahead.
+     *
+     * @param theLookahead true to look ahead.
+     */
+    public void setLookahead(final boolean theLookahead) {
+        myLookahead = theLookahead;
+    }
+
+    /**
+     * Finds the best placement of the current piece. The game is not
+     * changed.
+     *
+     * @param theGame the game.
+     * @return the best placement, or null if the game is over.
+     */
+    public Placement findBestMove(final GameCore theGame) {
+        final long start = System.nanoTime();
+        final List<Placement> candidates = theGame.getPlacements();
+        Placement result = null;
+        if (!candidates.isEmpty()) {
+            final GameCore.Snapshot root = theGame.snapshot();
+            double[] scores = new double[candidates.size()];
+            myPool.invoke(new SearchTask(root, theGame.getWidth(), theGame.getHeight(),
+                                         candidates, scores, start, false));
+            if (myLookahead && System.nanoTime() - start <= myBudget) {
+                final double[] deeper = new double[candidates.size()];
+                myPool.invoke(new SearchTask(root, theGame.getWidth(), theGame.getHeight(),
+                                             candidates, deeper, start, true));
+                if (isFinished(deeper)) {
+                    scores = deeper;
+                }
+            }
+            double best = Double.NEGATIVE_INFINITY;
+            result = candidates.get(0);
+            for (int i = 0; i < scores.length; i++) {
+                if (scores[i] > best) {
+                    best = scores[i];
+                    result = candidates.get(i);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests whether a pass scored every candidate.
+     *
+     * @param theScores the scores of the pass.
+     * @return true if no candidate is UNFINISHED.
+     */
+    private static boolean isFinished(final double[] theScores) {
+        boolean result = true;
+        for (int i = 0; result && i < theScores.length; i++) {
+            result = !Double.isNaN(theScores[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the worker copy of a game for the current thread.
+     *
+     * @param theWidth the width of the game.
+     * @param theHeight the height of the game.
+     * @return the worker.
+     */
+    private Worker getWorker(final int theWidth, final int theHeight) {
+        Worker result = myWorkers.get();
+        if (result == null || result.myGame.getWidth() != theWidth
+            || result.myGame.getHeight() != theHeight) {
+            result = new Worker(new GameCore(theWidth, theHeight));
+            myWorkers.set(result);
+        }
+        return result;
+    }
+
+    /**
+     * Scores the current position of a worker game, using the cache.
+     *
+     * @param theGame the worker game.
+     * @param theLines the lines cleared since the root position.
+     * @return the score, or negative infinity if the game is over.
+     */
+    private double score(final GameCore theGame, final int theLines) {
+        double result = Double.NEGATIVE_INFINITY;
+        if (!theGame.isGameOver()) {
+            final long hash = theGame.getFrozenHash()
+                              ^ sizeKey(theGame.getWidth(), theGame.getHeight());
+            double board = myTable.get(hash, Double.NaN);
+            if (Double.isNaN(board)) {
+                board = myEvaluator.evaluateBoard(theGame);
+                myTable.put(hash, board);
+            }
+            result = board + myEvaluator.evaluateLines(theLines);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the part of a cache key that tells board sizes apart. Every
+     * size has a different key, so the empty boards of two sizes, whose
+     * frozen hashes are both 0, are cached separately.
+     *
+     * @param theWidth the width of the board.
+     * @param theHeight the height of the board.
+     * @return the size key.
+     */
+    private static long sizeKey(final int theWidth, final int theHeight) {
+        final long key = ((long) theWidth << Integer.SIZE | theHeight) * SIZE_MIX;
+        return key ^ key >>> Integer.SIZE;
+    }
+
+    // Inner classes
+
+    /**
+     * A worker thread's own copy of the game.
+     */
+    private static final class Worker {
+
+        /**
+         * The copy of the game.
+         */
+        private final GameCore myGame;
+
+        /**
+         * The position after the candidate placement.
+         */
+        private GameCore.Snapshot myCandidate;
+
+        /**
+         * Constructs a worker.
+         *
+         * @param theGame the copy of the game.
+         */
+        Worker(final GameCore theGame) {
+            myGame = theGame;
+        }
+    }
+
+    /**
+     * Scores a range of candidates, splitting it in half until a single
+     * candidate remains.
+     */
+    private final class SearchTask extends RecursiveAction {
+
+        /** The serial version id. */
+        private static final long serialVersionUID = -2296468813419702713L;
+
+        /**
+         * The root position.
+         */
+        private final transient GameCore.Snapshot myRoot;
+
+        /**
+         * The width of the game.
+         */
+        private final int myWidth;
+
+        /**
+         * The height of the game.
+         */
+        private final int myHeight;
+
+        /**
+         * The candidate placements.
+         */
+        private final transient List<Placement> myCandidates;
+
+        /**
+         * The scores of the candidates, filled in by the tasks.
+         */
+        private final double[] myScores;
+
+        /**
+         * The start time of the search.
+         */
+        private final long myStart;
+
+        /**
+         * Whether this pass looks ahead through the next piece.
+         */
+        private final boolean myDeep;
+
+        /**
+         * The index of the first candidate to score.
+         */
+        private final int myFrom;
+
+        /**
+         * The index after the last candidate to score.
+         */
+        private final int myTo;
+
+        /**
+         * Constructs a task for all candidates.
+         *
+         * @param theRoot the root position.
+         * @param theWidth the width of the game.
+         * @param theHeight the height of the game.
+         * @param theCandidates the candidate placements.
+         * @param theScores the scores to fill in.
+         * @param theStart the start time of the search.
+         * @param theDeep whether to look ahead through the next piece.
+         */
+        SearchTask(final GameCore.Snapshot theRoot, final int theWidth, final int theHeight,
+                   final List<Placement> theCandidates, final double[] theScores,
+                   final long theStart, final boolean theDeep) {
+            this(theRoot, theWidth, theHeight, theCandidates, theScores, theStart, theDeep,
+                 0, theCandidates.size());
+        }
+
+        /**
+         * Constructs a task for a range of candidates.
+         *
+         * @param theRoot the root position.
+         * @param theWidth the width of the game.
+         * @param theHeight the height of the game.
+         * @param theCandidates the candidate placements.
+         * @param theScores the scores to fill in.
+         * @param theStart the start time of the search.
+         * @param theDeep whether to look ahead through the next piece.
+         * @param theFrom the index of the first candidate to score.
+         * @param theTo the index after the last candidate to score.
+         */
+        private SearchTask(final GameCore.Snapshot theRoot, final int theWidth,
+                           final int theHeight, final List<Placement> theCandidates,
+                           final double[] theScores, final long theStart,
+                           final boolean theDeep, final int theFrom, final int theTo) {
+            super();
+            myRoot = theRoot;
+            myWidth = theWidth;
+            myHeight = theHeight;
+            myCandidates = theCandidates;
+            myScores = theScores;
+            myStart = theStart;
+            myDeep = theDeep;
+            myFrom = theFrom;
+            myTo = theTo;
+        }
+
+        @Override
+        protected void compute() {
+            if (myTo - myFrom == 1) {
+                if (myDeep && isOutOfTime()) {
+                    myScores[myFrom] = UNFINISHED;
+                } else {
+                    myScores[myFrom] = scoreCandidate(myCandidates.get(myFrom));
+                }
+            } else {
+                final int middle = (myFrom + myTo) >>> 1;
+                ForkJoinTask.invokeAll(split(myFrom, middle), split(middle, myTo));
+            }
+        }
+
+        /**
+         * Creates a task for part of this task's range.
+         *
+         * @param theFrom the index of the first candidate to score.
+         * @param theTo the index after the last candidate to score.
+         * @return the task.
+         */
+        private SearchTask split(final int theFrom, final int theTo) {
+            return new SearchTask(myRoot, myWidth, myHeight, myCandidates, myScores,
+                                  myStart, myDeep, theFrom, theTo);
+        }
+
+        /**
+         * Scores one candidate on this thread's copy of the game: on its
+         * own, or in a deep pass by the best placement of the next piece
+         * that follows it.
+         *
+         * @param theCandidate the candidate placement.
+         * @return the score of the candidate, or UNFINISHED if a deep pass
+         *         ran out of time.
+         */
+        private double scoreCandidate(final Placement theCandidate) {
+            final Worker worker = getWorker(myWidth, myHeight);
+            final GameCore game = worker.myGame;
+            game.restore(myRoot);
+            final int lines = game.getLinesCleared();
+            game.place(theCandidate);
+            double result = score(game, game.getLinesCleared() - lines);
+            if (myDeep && !game.isGameOver()) {
+                if (worker.myCandidate == null) {
+                    worker.myCandidate = game.snapshot();
+                } else {
+                    game.snapshot(worker.myCandidate);
+                }
+                double best = UNFINISHED;
+                if (!isOutOfTime()) {
+                    final List<Placement> replies = game.getPlacements();
+                    best = result;
+                    for (int i = 0; i < replies.size() && !Double.isNaN(best); i++) {
+                        if (i == 0) {
+                            best = Double.NEGATIVE_INFINITY;
+                        } else {
+                            game.restore(worker.myCandidate);
+                        }
+                        if (isOutOfTime()) {
+                            best = UNFINISHED;
+                        } else {
+                            game.place(replies.get(i));
+                            best = Math.max(best,
+                                            score(game, game.getLinesCleared() - lines));
+                        }
+                    }
+                }
+                result = best;
+            }
+            return result;
+        }
+
+        /**
+         * Tests whether the time budget is spent.
+         *
+         * @return true if the deep pass should stop.
+         */
+        private boolean isOutOfTime() {
+            return System.nanoTime() - myStart > myBudget;
+        }
+    }
+}
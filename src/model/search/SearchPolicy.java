@@ -0,0 +1,48 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.search;
+
+import model.GameCore;
+import model.Placement;
+import model.simulation.MovePolicy;
+
+/**
+ * A MovePolicy that places each piece at the placement chosen by a
+ * MoveSearch, one piece per tick.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class SearchPolicy implements MovePolicy {
+
+    /**
+     * The search choosing the placements.
+     */
+    private final MoveSearch mySearch;
+
+    /**
+     * Constructs a policy.
+     *
+     * @param theSearch the search choosing the placements.
+     */
+    public SearchPolicy(final MoveSearch theSearch) {
+        mySearch = theSearch;
+    }
+
+    @Override
+    public void newGame(final GameCore theGame, final int theIndex) {
+        // nothing to reset
+    }
+
+    @Override
+    public void act(final GameCore theGame) {
+        final Placement best = mySearch.findBestMove(theGame);
+        if (best != null) {
+            theGame.place(best);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.search;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size cache of position evaluations keyed by Zobrist hash, shared
+ * by the threads of a search.
+ *
+ * The table is direct mapped: each hash has one slot, and a new entry
+ * evicts whatever the slot held. No locks are taken. Each slot stores the
+ * value and the hash exclusive or the value; a reader accepts the value
+ * only if the two words recombine to the hash it asked for, so a slot torn
+ * by concurrent writers reads as a miss rather than as a wrong value.
+ *
+ * The hash 0 is never stored, since it cannot be told apart from an empty
+ * slot.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class TranspositionTable {
+
+    /**
+     * The largest supported number of slots.
+     */
+    private static final int MAX_CAPACITY = 1 << 28;
+
+    /**
+     * The words per slot: the check word and the value.
+     */
+    private static final int SLOT_WORDS = 2;
+
+    /**
+     * The slots, two words each.
+     */
+    private final AtomicLongArray mySlots;
+
+    /**
+     * The mask selecting a slot from a hash.
+     */
+    private final int myMask;
+
+    /**
+     * Constructs an empty table.
+     *
+     * @param theCapacity the minimum number of slots; rounded up to a power
+     *        of two.
+     * @throws IllegalArgumentException if the capacity is not between 1 and
+     *         2^28.
+     */
+    public TranspositionTable(final int theCapacity) {
+        if (theCapacity < 1 || theCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Unsupported capacity: " + theCapacity);
+        }
+        final int capacity = Integer.highestOneBit(theCapacity * 2 - 1);
+        mySlots = new AtomicLongArray(capacity * SLOT_WORDS);
+        myMask = capacity - 1;
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the capacity.
+     */
+    public int getCapacity() {
+        return myMask + 1;
+    }
+
+    /**
+     * Looks up the value stored for a hash.
+     *
+     * @param theHash the hash of the position.
+     * @param theDefault the value to return if the hash is not stored.
+     * @return the stored value, or theDefault.
+     */
+    public double get(final long theHash, final double theDefault) {
+        double result = theDefault;
+        if (theHash != 0L) {
+            final int index = slot(theHash);
+            final long check = mySlots.get(index);
+            final long value = mySlots.get(index + 1);
+            if ((check ^ value) == theHash) {
+                result = Double.longBitsToDouble(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores a value for a hash, evicting the previous entry of its slot.
+     *
+     * @param theHash the hash of the position.
+     * @param theValue the value.
+     */
+    public void put(final long theHash, final double theValue) {
+        if (theHash != 0L) {
+            final int index = slot(theHash);
+            final long value = Double.doubleToRawLongBits(theValue);
+            mySlots.set(index, theHash ^ value);
+            mySlots.set(index + 1, value);
+        }
+    }
+
+    /**
+     * Removes all entries. Must not run concurrently with put().
+     */
+    public void clear() {
+        for (int i = 0; i < mySlots.length(); i++) {
+            mySlots.set(i, 0L);
+        }
+    }
+
+    /**
+     * Returns the index of the first word of the slot of a hash.
+     *
+     * @param theHash the hash.
+     * @return the word index.
+     */
+    private int slot(final long theHash) {
+        return ((int) (theHash ^ theHash >>> Integer.SIZE) & myMask) * SLOT_WORDS;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import model.GameCore;
+import model.PieceGenerator;
+import model.UniformPieceGenerator;
+
+/**
+ * Plays batches of independent headless games in parallel.
+ *
+ * The games of a batch are split recursively across a fork/join pool.
+ * Each leaf task reuses one GameCore and one MovePolicy for a run of
+ * games, so a batch allocates per task rather than per game. The
+ * outcomes are combined into a single SimulationResult.
+ *
+ * Every game gets its own PieceGenerator, seeded from the batch seed and
+ * the game's index, so a batch run twice with the same seed deals the
+ * same pieces to every game regardless of how the games are scheduled.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class BatchSimulator {
+
+    /**
+     * The number of games a task plays without splitting further.
+     */
+    private static final int GAMES_PER_TASK = 16;
+
+    /**
+     * The spacing between the seeds of consecutive games.
+     */
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The width of the simulated boards.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the simulated boards.
+     */
+    private final int myHeight;
+
+    /**
+     * The most ticks a game may last before it is stopped.
+     */
+    private final int myMaxTicks;
+
+    /**
+     * The pool that plays the games.
+     */
+    private final ForkJoinPool myPool;
+
+    /**
+     * Creates the piece generator of a game from its seed.
+     */
+    private LongFunction<? extends PieceGenerator> myGenerators;
+
+    /**
+     * Constructs a simulator that plays on the common fork/join pool.
+     *
+     * @param theWidth the width of the simulated boards.
+     * @param theHeight the height of the simulated boards.
+     * @param theMaxTicks the most ticks a game may last.
+     */
+    public BatchSimulator(final int theWidth, final int theHeight, final int theMaxTicks) {
+        this(theWidth, theHeight, theMaxTicks, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a simulator that plays on the given fork/join pool.
+     *
+     * @param theWidth the width of the simulated boards.
+     * @param theHeight the height of the simulated boards.
+     * @param theMaxTicks the most ticks a game may last.
+     * @param thePool the pool that plays the games.
+     */
+    public BatchSimulator(final int theWidth, final int theHeight, final int theMaxTicks,
+                          final ForkJoinPool thePool) {
+        if (theMaxTicks < 1) {
+            throw new IllegalArgumentException("theMaxTicks must be positive");
+        }
+        GameCore.checkSize(theWidth, theHeight);
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myMaxTicks = theMaxTicks;
+        myPool = thePool;
+        myGenerators = UniformPieceGenerator::new;
+    }
+
+    /**
+     * Sets how the piece generator of each game is created from its seed.
+     * The default creates a UniformPieceGenerator.
+     *
+     * @param theGenerators creates a piece generator from a seed; it is
+     *        called concurrently from the pool threads.
+     */
+    public void setGeneratorFactory(final LongFunction<? extends PieceGenerator>
+                                    theGenerators) {
+        myGenerators = theGenerators;
+    }
+
+    /**
+     * Plays a batch of games with a random batch seed and waits for all of
+     * them to finish.
+     *
+     * @param theGames the number of games to play.
+     * @param thePolicies supplies a MovePolicy for each task; it is called
+     *        concurrently from the pool threads.
+     * @return the combined outcome of the games.
+     */
+    public SimulationResult run(final int theGames,
+                                final Supplier<? extends MovePolicy> thePolicies) {
+        return run(theGames, ThreadLocalRandom.current().nextLong(), thePolicies);
+    }
+
+    /**
+     * Plays a reproducible batch of games and waits for all of them to finish.
+     *
+     * @param theGames the number of games to play.
+     * @param theSeed the batch seed.
+     * @param thePolicies supplies a MovePolicy for each task; it is called
+     *        concurrently from the pool threads.
+     * @return the combined outcome of the games.
+     */
+    public SimulationResult run(final int theGames, final long theSeed,
+                                final Supplier<? extends MovePolicy> thePolicies) {
+        return myPool.invoke(new GameTask(0, theGames, theSeed, thePolicies));
+    }
+
+    /**
+     * Returns the seed of a game in a batch.
+     *
+     * @param theBatchSeed the batch seed.
+     * @param theIndex the index of the game in the batch.
+     * @return the seed of the game.
+     */
+    public static long gameSeed(final long theBatchSeed, final int theIndex) {
+        return theBatchSeed + theIndex * SEED_STEP;
+    }
+
+    /**
+     * Plays one game to the end or to the tick limit.
+     *
+     * @param theGame the game engine to play on.
+     * @param thePolicy the policy that moves the pieces.
+     * @param theSeed the batch seed.
+     * @param theIndex the index of the game in the batch.
+     * @return the outcome of the game.
+     */
+    private SimulationResult playGame(final GameCore theGame, final MovePolicy thePolicy,
+                                      final long theSeed, final int theIndex) {
+        theGame.setPieceGenerator(myGenerators.apply(gameSeed(theSeed, theIndex)));
+        theGame.newGame();
+        thePolicy.newGame(theGame, theIndex);
+        int ticks = 0;
+        while (!theGame.isGameOver() && ticks < myMaxTicks) {
+            thePolicy.act(theGame);
+            if (!theGame.isGameOver()) {
+                theGame.step();
+            }
+            ticks++;
+        }
+        return SimulationResult.ofGame(theGame.getLinesCleared(),
+                                       theGame.getPiecesPlaced(), ticks);
+    }
+
+    /**
+     * Plays a range of games, splitting it across the pool when it is large.
+     */
+    private final class GameTask extends RecursiveTask<SimulationResult> {
+
+        /** The serial version id. */
+        private static final long serialVersionUID = 4012843355802357041L;
+
+        /**
+         * The index of the first game to play.
+         */
+        private final int myFrom;
+
+        /**
+         * The index after the last game to play.
+         */
+        private final int myTo;
+
+        /**
+         * The batch seed.
+         */
+        private final long mySeed;
+
+        /**
+         * Supplies the policies for the leaf tasks.
+         */
+        private final transient Supplier<? extends MovePolicy> myPolicies;
+
+        /**
+         * Constructs a task for a range of games.
+         *
+         * @param theFrom the index of the first game to play.
+         * @param theTo the index after the last game to play.
+         * @param theSeed the batch seed.
+         * @param thePolicies supplies the policies for the leaf tasks.
+         */
+        GameTask(final int theFrom, final int theTo, final long theSeed,
+                 final Supplier<? extends MovePolicy> thePolicies) {
+            super();
+            myFrom = theFrom;
+            myTo = theTo;
+            mySeed = theSeed;
+            myPolicies = thePolicies;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            SimulationResult result = SimulationResult.EMPTY;
+            if (myTo - myFrom <= GAMES_PER_TASK) {
+                final GameCore game = new GameCore(myWidth, myHeight);
+                final MovePolicy policy = myPolicies.get();
+                for (int i = myFrom; i < myTo; i++) {
+                    result = result.combine(playGame(game, policy, mySeed, i));
+                }
+            } else {
+                final int middle = (myFrom + myTo) >>> 1;
+                final GameTask left = new GameTask(myFrom, middle, mySeed, myPolicies);
+                left.fork();
+                result = new GameTask(middle, myTo, mySeed, myPolicies).compute()
+                                .combine(left.join());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.simulation;
+
+import model.GameCore;
+
+/**
+ * Decides how to move the current piece of a headless game.
+ *
+ * A BatchSimulator calls act() once per tick, before the game advances
+ * by one step, so a policy plays under the same gravity as a human
+ * player. A policy may call any of the game methods (left, right,
+ * rotateCW, rotateCCW, down, drop) any number of times per tick.
+ *
+ * A policy instance is only ever used by one thread at a time.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public interface MovePolicy {
+
+    /**
+     * Called at the start of each new game.
+     *
+     * @param theGame the game that is starting.
+     * @param theIndex the index of the game in its batch.
+     */
+    void newGame(GameCore theGame, int theIndex);
+
+    /**
+     * Moves the current piece for one tick.
+     *
+     * @param theGame the game to play.
+     */
+    void act(GameCore theGame);
+}
@@ -0,0 +1,184 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.simulation;
+
+/**
+ * The aggregated outcome of a batch of simulated games.
+ *
+ * A SimulationResult is immutable.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class SimulationResult {
+
+    /**
+     * The result of no games.
+     */
+    public static final SimulationResult EMPTY =
+                    new SimulationResult(0, 0L, 0L, 0L, Integer.MAX_VALUE, 0);
+
+    /**
+     * The number of games played.
+     */
+    private final int myGames;
+
+    /**
+     * The total number of lines cleared.
+     */
+    private final long myLinesCleared;
+
+    /**
+     * The total number of pieces placed.
+     */
+    private final long myPiecesPlaced;
+
+    /**
+     * The total number of ticks played.
+     */
+    private final long myTicks;
+
+    /**
+     * The fewest ticks played in one game.
+     */
+    private final int myShortestGame;
+
+    /**
+     * The most ticks played in one game.
+     */
+    private final int myLongestGame;
+
+    /**
+     * Constructs a SimulationResult.
+     *
+     * @param theGames the number of games played.
+     * @param theLinesCleared the total number of lines cleared.
+     * @param thePiecesPlaced the total number of pieces placed.
+     * @param theTicks the total number of ticks played.
+     * @param theShortestGame the fewest ticks played in one game.
+     * @param theLongestGame the most ticks played in one game.
+     */
+    private SimulationResult(final int theGames, final long theLinesCleared,
+                             final long thePiecesPlaced, final long theTicks,
+                             final int theShortestGame, final int theLongestGame) {
+        myGames = theGames;
+        myLinesCleared = theLinesCleared;
+        myPiecesPlaced = thePiecesPlaced;
+        myTicks = theTicks;
+        myShortestGame = theShortestGame;
+        myLongestGame = theLongestGame;
+    }
+
+    /**
+     * Returns the result of a single game.
+     *
+     * @param theLinesCleared the number of lines cleared.
+     * @param thePiecesPlaced the number of pieces placed.
+     * @param theTicks the number of ticks played.
+     * @return the result of the game.
+     */
+    public static SimulationResult ofGame(final int theLinesCleared,
+                                          final int thePiecesPlaced,
+                                          final int theTicks) {
+        return new SimulationResult(1, theLinesCleared, thePiecesPlaced, theTicks,
+                                    theTicks, theTicks);
+    }
+
+    /**
+     * Combines this result with another.
+     *
+     * @param theOther the other result.
+     * @return the result of both batches of games.
+     */
+    public SimulationResult combine(final SimulationResult theOther) {
+        return new SimulationResult(myGames + theOther.myGames,
+                                    myLinesCleared + theOther.myLinesCleared,
+                                    myPiecesPlaced + theOther.myPiecesPlaced,
+                                    myTicks + theOther.myTicks,
+                                    Math.min(myShortestGame, theOther.myShortestGame),
+                                    Math.max(myLongestGame, theOther.myLongestGame));
+    }
+
+    /**
+     * Returns the number of games played.
+     *
+     * @return the number of games.
+     */
+    public int getGames() {
+        return myGames;
+    }
+
+    /**
+     * Returns the total number of lines cleared.
+     *
+     * @return the number of lines cleared.
+     */
+    public long getLinesCleared() {
+        return myLinesCleared;
+    }
+
+    /**
+     * Returns the total number of pieces placed.
+     *
+     * @return the number of pieces placed.
+     */
+    public long getPiecesPlaced() {
+        return myPiecesPlaced;
+    }
+
+    /**
+     * Returns the total number of ticks played.
+     *
+     * @return the number of ticks.
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * Returns the fewest ticks played in one game.
+     *
+     * @return the length of the shortest game, or 0 if no games were played.
+     */
+    public int getShortestGame() {
+        int result = 0;
+        if (myGames > 0) {
+            result = myShortestGame;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the most ticks played in one game.
+     *
+     * @return the length of the longest game.
+     */
+    public int getLongestGame() {
+        return myLongestGame;
+    }
+
+    /**
+     * Returns the mean number of lines cleared per game.
+     *
+     * @return the mean lines per game, or 0 if no games were played.
+     */
+    public double getMeanLinesCleared() {
+        double result = 0;
+        if (myGames > 0) {
+            result = (double) myLinesCleared / myGames;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d games: %d lines (%.2f per game), %d pieces, "
+                             + "%d ticks (shortest %d, longest %d)",
+                             myGames, myLinesCleared, getMeanLinesCleared(),
+                             myPiecesPlaced, myTicks, getShortestGame(), myLongestGame);
+    }
+}
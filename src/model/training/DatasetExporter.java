@@ -0,0 +1,262 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.training;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import model.GameAction;
+import model.GameCore;
+import model.GameRecorder;
+import model.Placement;
+import model.simulation.BatchSimulator;
+import model.simulation.MovePolicy;
+import model.simulation.SimulationResult;
+
+/**
+ * Plays headless games on a BatchSimulator and exports every piece the
+ * games freeze to a DatasetWriter.
+ *
+ * Each policy is wrapped so that it records the game as it plays. Just
+ * before an action that freezes the current piece, whether a place(), a
+ * drop(), or a down() or step() of a piece that has landed, the board,
+ * pieces and final placement are encoded into a batch belonging to the
+ * policy's thread; once the action is over the rows it cleared are filled
+ * in as the reward. Pieces are recorded the same way whether the policy
+ * places them directly or moves them step by step and lets gravity freeze
+ * them. Full batches are appended to the file, so the games run in
+ * parallel and only touch the file once per batch.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class DatasetExporter {
+
+    /**
+     * The default number of records in a batch.
+     */
+    public static final int DEFAULT_BATCH_RECORDS = 4096;
+
+    /**
+     * The simulator that plays the games.
+     */
+    private final BatchSimulator mySimulator;
+
+    /**
+     * The writer the records are appended to.
+     */
+    private final DatasetWriter myWriter;
+
+    /**
+     * The number of records in a batch.
+     */
+    private final int myBatchRecords;
+
+    /**
+     * The number of games exported so far.
+     */
+    private final AtomicInteger myGames;
+
+    /**
+     * Constructs an exporter with the default batch size.
+     *
+     * @param theSimulator the simulator that plays the games.
+     * @param theWriter the writer the records are appended to.
+     */
+    public DatasetExporter(final BatchSimulator theSimulator, final DatasetWriter theWriter) {
+        this(theSimulator, theWriter, DEFAULT_BATCH_RECORDS);
+    }
+
+    /**
+     * Constructs an exporter.
+     *
+     * @param theSimulator the simulator that plays the games; its boards
+     *        must be the size of the dataset.
+     * @param theWriter the writer the records are appended to.
+     * @param theBatchRecords the number of records in a batch.
+     */
+    public DatasetExporter(final BatchSimulator theSimulator, final DatasetWriter theWriter,
+                           final int theBatchRecords) {
+        if (theBatchRecords < 1) {
+            throw new IllegalArgumentException("theBatchRecords must be positive");
+        }
+        mySimulator = theSimulator;
+        myWriter = theWriter;
+        myBatchRecords = theBatchRecords;
+        myGames = new AtomicInteger();
+    }
+
+    /**
+     * Plays a reproducible batch of games and exports their placements.
+     * Games are numbered in the records by their index in the batch,
+     * counting on from any earlier export by this exporter, so an export
+     * run twice with the same seed writes the same records.
+     *
+     * @param theGames the number of games to play.
+     * @param theSeed the batch seed.
+     * @param thePolicies supplies a MovePolicy for each task; it is called
+     *        concurrently from the pool threads.
+     * @return the combined outcome of the games.
+     * @throws IOException if the records cannot be appended.
+     */
+    public SimulationResult export(final int theGames, final long theSeed,
+                                   final Supplier<? extends MovePolicy> thePolicies)
+        throws IOException {
+        final int firstGame = myGames.getAndAdd(theGames);
+        final Queue<RecordingPolicy> policies = new ConcurrentLinkedQueue<RecordingPolicy>();
+        final SimulationResult result;
+        try {
+            result = mySimulator.run(theGames, theSeed, () -> {
+                final RecordingPolicy policy = new RecordingPolicy(thePolicies.get(),
+                                                                   firstGame);
+                policies.add(policy);
+                return policy;
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (final RecordingPolicy policy : policies) {
+            policy.finishPending();
+            myWriter.append(policy.myBatch);
+        }
+        return result;
+    }
+
+    /**
+     * Wraps a MovePolicy and encodes the pieces its games freeze.
+     */
+    private final class RecordingPolicy implements MovePolicy, GameRecorder {
+
+        /**
+         * The wrapped policy.
+         */
+        private final MovePolicy myPolicy;
+
+        /**
+         * The batch of encoded records.
+         */
+        private final ByteBuffer myBatch;
+
+        /**
+         * The number of the first game of the export.
+         */
+        private final int myFirstGame;
+
+        /**
+         * The game being played.
+         */
+        private GameCore myGame;
+
+        /**
+         * The number of the game being played.
+         */
+        private int myGameNumber;
+
+        /**
+         * The position of the record awaiting its reward, or -1.
+         */
+        private int myPending;
+
+        /**
+         * The rows cleared before the pending placement.
+         */
+        private int myLinesBefore;
+
+        /**
+         * The pieces placed before the pending placement.
+         */
+        private int myPiecesBefore;
+
+        /**
+         * Constructs a recording wrapper.
+         *
+         * @param thePolicy the policy to wrap.
+         * @param theFirstGame the number of the first game of the export.
+         */
+        RecordingPolicy(final MovePolicy thePolicy, final int theFirstGame) {
+            myPolicy = thePolicy;
+            myFirstGame = theFirstGame;
+            myBatch = myWriter.newBatch(myBatchRecords);
+            myPending = -1;
+        }
+
+        @Override
+        public void newGame(final GameCore theGame, final int theIndex) {
+            myGame = theGame;
+            myGameNumber = myFirstGame + theIndex;
+            theGame.setRecorder(this);
+            myPolicy.newGame(theGame, theIndex);
+        }
+
+        @Override
+        public void act(final GameCore theGame) {
+            myPolicy.act(theGame);
+            finishPending();
+        }
+
+        @Override
+        public void actionPerformed(final long theTick, final GameAction theAction) {
+            finishPending();
+            if (theAction == GameAction.DROP) {
+                record(myGame.getLandingPlacement());
+            } else if ((theAction == GameAction.DOWN || theAction == GameAction.STEP)
+                       && myGame.isLanded()) {
+                record(myGame.getLandingPlacement());
+            }
+        }
+
+        @Override
+        public void piecePlaced(final long theTick, final Placement thePlacement) {
+            finishPending();
+            record(thePlacement);
+        }
+
+        /**
+         * Encodes the game as it is before a piece freezes, leaving the
+         * record pending until the freeze is over.
+         *
+         * @param thePlacement the placement the piece freezes at, or null
+         *        if there is no piece to freeze.
+         */
+        private void record(final Placement thePlacement) {
+            if (thePlacement != null) {
+                if (myBatch.remaining() < myWriter.getRecordSize()) {
+                    try {
+                        myWriter.append(myBatch);
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                myPending = myWriter.encode(myBatch, myGameNumber, myGame, thePlacement);
+                myLinesBefore = myGame.getLinesCleared();
+                myPiecesBefore = myGame.getPiecesPlaced();
+            }
+        }
+
+        /**
+         * Fills in the reward of the pending record, or drops the record
+         * if its piece did not freeze.
+         */
+        private void finishPending() {
+            if (myPending >= 0) {
+                if (myGame.getPiecesPlaced() == myPiecesBefore) {
+                    myBatch.position(myPending);
+                } else {
+                    myWriter.finish(myBatch, myPending,
+                                    myGame.getLinesCleared() - myLinesBefore,
+                                    myGame.isGameOver());
+                }
+                myPending = -1;
+            }
+        }
+    }
+}
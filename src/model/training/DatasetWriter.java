@@ -0,0 +1,289 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.training;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import model.GameCore;
+import model.Placement;
+
+/**
+ * Appends fixed-width training records to a memory-mapped file.
+ *
+ * Each record describes one placement: the frozen blocks before it, the
+ * piece being placed and the next piece, the chosen placement, and the
+ * reward, which is the number of rows the placement cleared. Records are
+ * encoded into a heap batch by encode() and appended a whole batch at a
+ * time, each batch into a newly mapped region at the end of the file, so
+ * the file always holds exactly the records written.
+ *
+ * The file is little-endian, so training code can map it and view the
+ * records as a structured array without copying or parsing:
+ *
+ * <pre>
+ * header, HEADER_BYTES long:
+ *   0  int   magic "TDAT"
+ *   4  int   version
+ *   8  int   board width
+ *   12 int   board height
+ *   16 int   record size in bytes
+ *   20 int   bytes per row mask
+ *   24 long  number of records
+ * record, getRecordSize() long:
+ *   0  int   game number
+ *   4  short x of the placement
+ *   6  short y of the placement
+ *   8  byte  piece ordinal
+ *   9  byte  next piece ordinal
+ *   10 byte  rotation ordinal of the placement
+ *   11 byte  reward: rows cleared by the placement
+ *   12 byte  flags: 1 if the placement ended the game
+ *   16       one row mask per row, bottom row first, each
+ *            ceil(width / 8) bytes; bit x is set when (x, row) is frozen
+ * </pre>
+ *
+ * The record size is rounded up to a multiple of 8 bytes.
+ * The methods of a DatasetWriter may be called from any thread.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class DatasetWriter implements Closeable {
+
+    /**
+     * The first four bytes of a dataset: "TDAT".
+     */
+    public static final int MAGIC = 0x54444154;
+
+    /**
+     * The version of the dataset format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The size of the file header in bytes.
+     */
+    public static final int HEADER_BYTES = 32;
+
+    /**
+     * The offset of the record count in the header.
+     */
+    private static final int COUNT_OFFSET = 24;
+
+    /**
+     * The offset of the reward in a record.
+     */
+    private static final int REWARD_OFFSET = 11;
+
+    /**
+     * The offset of the flags in a record.
+     */
+    private static final int FLAGS_OFFSET = 12;
+
+    /**
+     * The size of the fixed part of a record, before the row masks.
+     */
+    private static final int FIELD_BYTES = 16;
+
+    /**
+     * The flag of a placement that ended the game.
+     */
+    private static final int GAME_OVER = 1;
+
+    /**
+     * The width of the boards.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the boards.
+     */
+    private final int myHeight;
+
+    /**
+     * The number of bytes per row mask.
+     */
+    private final int myRowBytes;
+
+    /**
+     * The size of a record in bytes.
+     */
+    private final int myRecordSize;
+
+    /**
+     * The file being written.
+     */
+    private final FileChannel myChannel;
+
+    /**
+     * The mapped file header.
+     */
+    private final MappedByteBuffer myHeader;
+
+    /**
+     * The number of records appended.
+     */
+    private long myCount;
+
+    /**
+     * Creates a dataset file, replacing any existing file.
+     *
+     * @param theFile the file to write.
+     * @param theWidth the width of the boards.
+     * @param theHeight the height of the boards.
+     * @throws IOException if the file cannot be created.
+     */
+    public DatasetWriter(final Path theFile, final int theWidth, final int theHeight)
+        throws IOException {
+        GameCore.checkSize(theWidth, theHeight);
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myRowBytes = (theWidth + Byte.SIZE - 1) / Byte.SIZE;
+        myRecordSize = (FIELD_BYTES + theHeight * myRowBytes + Long.BYTES - 1)
+                       & -Long.BYTES;
+        myChannel = FileChannel.open(theFile, StandardOpenOption.CREATE,
+                                     StandardOpenOption.TRUNCATE_EXISTING,
+                                     StandardOpenOption.READ, StandardOpenOption.WRITE);
+        myHeader = myChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        myHeader.order(ByteOrder.LITTLE_ENDIAN);
+        myHeader.putInt(MAGIC).putInt(VERSION).putInt(theWidth).putInt(theHeight)
+                .putInt(myRecordSize).putInt(myRowBytes).putLong(0L);
+    }
+
+    /**
+     * Returns the size of a record in bytes.
+     *
+     * @return the record size.
+     */
+    public int getRecordSize() {
+        return myRecordSize;
+    }
+
+    /**
+     * Returns the number of records appended so far.
+     *
+     * @return the record count.
+     */
+    public synchronized long getRecordCount() {
+        return myCount;
+    }
+
+    /**
+     * Allocates a heap batch for a number of records, in the byte order
+     * of the file.
+     *
+     * @param theRecords the number of records the batch holds.
+     * @return the empty batch.
+     */
+    public ByteBuffer newBatch(final int theRecords) {
+        return ByteBuffer.allocate(theRecords * myRecordSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Encodes a placement about to be made into a batch. The reward and
+     * game over flag are left zero for finish() to fill in once the
+     * placement has been made.
+     *
+     * @param theBatch the batch, from newBatch(), with room for a record.
+     * @param theGameNumber the number of the game.
+     * @param theGame the game before the placement.
+     * @param thePlacement the placement of the current piece.
+     * @return the position of the record in the batch.
+     * @throws IllegalArgumentException if the game has another board size.
+     */
+    public int encode(final ByteBuffer theBatch, final int theGameNumber,
+                      final GameCore theGame, final Placement thePlacement) {
+        if (theGame.getWidth() != myWidth || theGame.getHeight() != myHeight) {
+            throw new IllegalArgumentException("The dataset is for " + myWidth + " x "
+                                               + myHeight + " boards");
+        }
+        final int result = theBatch.position();
+        theBatch.putInt(theGameNumber);
+        theBatch.putShort((short) thePlacement.getX());
+        theBatch.putShort((short) thePlacement.getY());
+        theBatch.put((byte) thePlacement.getTetrisPiece().ordinal());
+        theBatch.put((byte) theGame.getNextPiece().ordinal());
+        theBatch.put((byte) thePlacement.getRotation().ordinal());
+        zeroFill(theBatch, result + FIELD_BYTES);
+        for (int y = 0; y < myHeight; y++) {
+            final long mask = theGame.getRowMask(y);
+            for (int b = 0; b < myRowBytes; b++) {
+                theBatch.put((byte) (mask >>> b * Byte.SIZE));
+            }
+        }
+        zeroFill(theBatch, result + myRecordSize);
+        return result;
+    }
+
+    /**
+     * Fills in the outcome of an encoded placement once it has been made.
+     *
+     * @param theBatch the batch holding the record.
+     * @param theRecord the position of the record, from encode().
+     * @param theRowsCleared the number of rows the placement cleared.
+     * @param theGameOver whether the placement ended the game.
+     */
+    public void finish(final ByteBuffer theBatch, final int theRecord,
+                       final int theRowsCleared, final boolean theGameOver) {
+        theBatch.put(theRecord + REWARD_OFFSET, (byte) theRowsCleared);
+        if (theGameOver) {
+            theBatch.put(theRecord + FLAGS_OFFSET, (byte) GAME_OVER);
+        }
+    }
+
+    /**
+     * Appends the records of a batch to the file and clears the batch.
+     *
+     * @param theBatch the batch, holding whole records from position 0 up
+     *        to its position.
+     * @throws IOException if the file cannot be extended.
+     */
+    public synchronized void append(final ByteBuffer theBatch) throws IOException {
+        theBatch.flip();
+        if (theBatch.hasRemaining()) {
+            final MappedByteBuffer region =
+                myChannel.map(FileChannel.MapMode.READ_WRITE,
+                              HEADER_BYTES + myCount * myRecordSize, theBatch.remaining());
+            region.put(theBatch);
+            myCount += theBatch.limit() / myRecordSize;
+            myHeader.putLong(COUNT_OFFSET, myCount);
+        }
+        theBatch.clear();
+    }
+
+    /**
+     * Writes the records and header to disk and closes the file.
+     *
+     * @throws IOException if the file cannot be written or closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        myHeader.force();
+        myChannel.force(true);
+        myChannel.close();
+    }
+
+    /**
+     * Zeroes a batch from its position up to an end position, which
+     * clears any record left in a reused batch.
+     *
+     * @param theBatch the batch.
+     * @param theEnd the position after the last byte to zero.
+     */
+    private static void zeroFill(final ByteBuffer theBatch, final int theEnd) {
+        while (theBatch.position() < theEnd) {
+            theBatch.put((byte) 0);
+        }
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * TCSS 305
+ *
+ * An implementation of the classic game "Tetris".
+ */
+
+package model.training;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import model.search.Evaluator;
+import model.search.GreedyPolicy;
+import model.simulation.BatchSimulator;
+
+/**
+ * Evolves the weights of an Evaluator with a genetic algorithm.
+ *
+ * Each generation, every candidate plays the same batch of headless games
+ * on a BatchSimulator, placing each piece greedily with a GreedyPolicy
+ * over the candidate's Evaluator, and its fitness is the total number of
+ * lines it cleared. The games of one candidate run in parallel. The
+ * weakest part of the population is then replaced by offspring: two
+ * parents chosen by tournament are crossed by a fitness weighted average
+ * of their weights, occasionally mutated, and scaled to unit length.
+ *
+ * Training is deterministic: the games and every random choice of a
+ * generation are derived from the trainer seed and the generation number,
+ * so a run resumed from a checkpoint continues exactly as the original
+ * would have.
+ *
+ * @author Alan Fowler
+ * @version Spring 2015
+ */
+public final class GeneticTrainer {
+
+    /**
+     * The first line of a checkpoint file.
+     */
+    private static final String HEADER = "# Tetris evaluator training checkpoint";
+
+    /**
+     * The checkpoint lines that must appear exactly once.
+     */
+    private static final List<String> REQUIRED = Arrays.asList("seed", "games", "generation");
+
+    /**
+     * The fraction of the population replaced each generation.
+     */
+    private static final double OFFSPRING_FRACTION = 0.3;
+
+    /**
+     * The fraction of the population entered in each tournament.
+     */
+    private static final double TOURNAMENT_FRACTION = 0.1;
+
+    /**
+     * The probability that an offspring is mutated.
+     */
+    private static final double MUTATION_RATE = 0.05;
+
+    /**
+     * The largest change a mutation makes to one weight.
+     */
+    private static final double MUTATION_STEP = 0.2;
+
+    /**
+     * The smallest supported population.
+     */
+    private static final int MIN_POPULATION = 2;
+
+    /**
+     * The simulator playing the games.
+     */
+    private final BatchSimulator mySimulator;
+
+    /**
+     * The number of games each candidate plays per generation.
+     */
+    private final int myGames;
+
+    /**
+     * The trainer seed.
+     */
+    private final long mySeed;
+
+    /**
+     * The weights of each candidate.
+     */
+    private final double[][] myPopulation;
+
+    /**
+     * The number of generations evolved so far.
+     */
+    private int myGeneration;
+
+    /**
+     * The best candidate of the last evaluated generation, or null.
+     */
+    private double[] myBest;
+
+    /**
+     * The fitness of the best candidate.
+     */
+    private long myBestFitness;
+
+    /**
+     * Constructs a trainer with a random initial population.
+     *
+     * @param theSimulator the simulator playing the games.
+     * @param thePopulation the number of candidates.
+     * @param theGames the number of games each candidate plays per generation.
+     * @param theSeed the seed of the games and of the random choices.
+     * @throws IllegalArgumentException if the population is smaller than
+     *         two or the number of games is not positive.
+     */
+    public GeneticTrainer(final BatchSimulator theSimulator, final int thePopulation,
+                          final int theGames, final long theSeed) {
+        this(theSimulator, new double[thePopulation][], theGames, theSeed, 0);
+        final SplittableRandom random = new SplittableRandom(theSeed);
+        for (int i = 0; i < thePopulation; i++) {
+            final double[] weights = new double[Evaluator.FEATURES];
+            for (int j = 0; j < weights.length; j++) {
+                weights[j] = random.nextDouble(-1, 1);
+            }
+            myPopulation[i] = normalize(weights);
+        }
+    }
+
+    /**
+     * Constructs a trainer from a population.
+     *
+     * @param theSimulator the simulator playing the games.
+     * @param thePopulation the weights of each candidate.
+     * @param theGames the number of games each candidate plays per generation.
+     * @param theSeed the seed of the games and of the random choices.
+     * @param theGeneration the number of generations already evolved.
+     */
+    private GeneticTrainer(final BatchSimulator theSimulator, final double[][] thePopulation,
+                           final int theGames, final long theSeed, final int theGeneration) {
+        if (thePopulation.length < MIN_POPULATION || theGames < 1) {
+            throw new IllegalArgumentException("Needs at least " + MIN_POPULATION
+                                               + " candidates and one game");
+        }
+        mySimulator = theSimulator;
+        myPopulation = thePopulation;
+        myGames = theGames;
+        mySeed = theSeed;
+        myGeneration = theGeneration;
+    }
+
+    /**
+     * Resumes training from a checkpoint written by checkpoint(). The
+     * checkpoint must have exactly one seed, games and generation line, at
+     * most one best line, and at least two candidates.
+     *
+     * @param theSimulator the simulator playing the games.
+     * @param theFile the checkpoint file.
+     * @return a trainer in the state that was saved.
+     * @throws IOException if the file cannot be read or is not a complete
+     *         checkpoint.
+     */
+    public static GeneticTrainer resume(final BatchSimulator theSimulator, final Path theFile)
+        throws IOException {
+        long seed = 0L;
+        int games = 0;
+        int generation = 0;
+        long bestFitness = 0L;
+        double[] best = null;
+        final List<double[]> population = new ArrayList<double[]>();
+        final Set<String> seen = new HashSet<String>();
+        try (BufferedReader in = Files.newBufferedReader(theFile, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                throw new IOException("Not a training checkpoint: " + theFile);
+            }
+            String line = in.readLine();
+            while (line != null) {
+                final String[] fields = line.trim().split("\\s+");
+                if (!"candidate".equals(fields[0]) && !seen.add(fields[0])) {
+                    throw new IOException("Repeated checkpoint line: " + line);
+                }
+                try {
+                    switch (fields[0]) {
+                        case "seed":
+                            seed = Long.parseLong(fields[1]);
+                            break;
+                        case "games":
+                            games = Integer.parseInt(fields[1]);
+                            break;
+                        case "generation":
+                            generation = Integer.parseInt(fields[1]);
+                            break;
+                        case "best":
+                            bestFitness = Long.parseLong(fields[1]);
+                            best = parseWeights(fields, 2);
+                            break;
+                        case "candidate":
+                            population.add(parseWeights(fields, 1));
+                            break;
+                        default:
+                            throw new IOException("Unexpected checkpoint line: " + line);
+                    }
+                } catch (final NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Malformed checkpoint line: " + line, e);
+                }
+                line = in.readLine();
+            }
+        }
+        if (!seen.containsAll(REQUIRED) || population.size() < MIN_POPULATION) {
+            throw new IOException("Incomplete training checkpoint: " + theFile);
+        }
+        if (games < 1 || generation < 0) {
+            throw new IOException("Malformed training checkpoint: " + theFile);
+        }
+        final GeneticTrainer result =
+                        new GeneticTrainer(theSimulator, population.toArray(new double[0][]),
+                                           games, seed, generation);
+        result.myBest = best;
+        result.myBestFitness = bestFitness;
+        return result;
+    }
+
+    /**
+     * Returns the number of generations evolved so far.
+     *
+     * @return the generation number.
+     */
+    public int getGeneration() {
+        return myGeneration;
+    }
+
+    /**
+     * Returns the best candidate of the last evaluated generation.
+     *
+     * @return the best evaluator, or null before the first generation.
+     */
+    public Evaluator getBest() {
+        Evaluator result = null;
+        if (myBest != null) {
+            result = new Evaluator(myBest);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the fitness of the best candidate of the last evaluated
+     * generation.
+     *
+     * @return the lines cleared by the best candidate.
+     */
+    public long getBestFitness() {
+        return myBestFitness;
+    }
+
+    /**
+     * Evaluates the population and breeds the next generation.
+     */
+    public void evolve() {
+        final long generationSeed = BatchSimulator.gameSeed(mySeed, myGeneration * myGames);
+        final Integer[] order = new Integer[myPopulation.length];
+        final long[] fitness = new long[myPopulation.length];
+        for (int i = 0; i < myPopulation.length; i++) {
+            fitness[i] = play(myPopulation[i], generationSeed);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> fitness[i]).reversed());
+        myBest = myPopulation[order[0]].clone();
+        myBestFitness = fitness[order[0]];
+
+        final SplittableRandom random = new SplittableRandom(generationSeed);
+        final int offspring = Math.max(1, (int) (myPopulation.length * OFFSPRING_FRACTION));
+        final double[][] children = new double[offspring][];
+        for (int i = 0; i < offspring; i++) {
+            children[i] = breed(select(fitness, random), select(fitness, random),
+                                fitness, random);
+        }
+        for (int i = 0; i < offspring; i++) {
+            myPopulation[order[order.length - 1 - i]] = children[i];
+        }
+        myGeneration++;
+    }
+
+    /**
+     * Saves the trainer to a checkpoint file. The file is written beside
+     * its final name and then moved into place, so an interrupted save
+     * never leaves a damaged checkpoint.
+     *
+     * @param theFile the checkpoint file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void checkpoint(final Path theFile) throws IOException {
+        final Path temp = theFile.resolveSibling(theFile.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            out.write("seed " + mySeed);
+            out.newLine();
+            out.write("games " + myGames);
+            out.newLine();
+            out.write("generation " + myGeneration);
+            out.newLine();
+            if (myBest != null) {
+                out.write("best " + myBestFitness + formatWeights(myBest));
+                out.newLine();
+            }
+            for (final double[] weights : myPopulation) {
+                out.write("candidate" + formatWeights(weights));
+                out.newLine();
+            }
+        }
+        Files.move(temp, theFile, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Plays the games of one generation with a candidate.
+     *
+     * @param theWeights the weights of the candidate.
+     * @param theSeed the batch seed of the generation.
+     * @return the total lines cleared.
+     */
+    private long play(final double[] theWeights, final long theSeed) {
+        final Evaluator evaluator = new Evaluator(theWeights);
+        return mySimulator.run(myGames, theSeed, () -> new GreedyPolicy(evaluator))
+                        .getLinesCleared();
+    }
+
+    /**
+     * Chooses a parent: the fittest of a random sample of the population.
+     *
+     * @param theFitness the fitness of each candidate.
+     * @param theRandom the source of randomness.
+     * @return the index of the parent.
+     */
+    private int select(final long[] theFitness, final SplittableRandom theRandom) {
+        final int entrants = Math.max(MIN_POPULATION,
+                                      (int) (theFitness.length * TOURNAMENT_FRACTION));
+        int result = theRandom.nextInt(theFitness.length);
+        for (int i = 1; i < entrants; i++) {
+            final int entrant = theRandom.nextInt(theFitness.length);
+            if (theFitness[entrant] > theFitness[result]) {
+                result = entrant;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Crosses two parents and possibly mutates the child.
+     *
+     * @param theFirst the index of the first parent.
+     * @param theSecond the index of the second parent.
+     * @param theFitness the fitness of each candidate.
+     * @param theRandom the source of randomness.
+     * @return the weights of the child, scaled to unit length.
+     */
+    private double[] breed(final int theFirst, final int theSecond, final long[] theFitness,
+                           final SplittableRandom theRandom) {
+        long first = theFitness[theFirst];
+        long second = theFitness[theSecond];
+        if (first + second == 0L) {
+            first = 1L;
+            second = 1L;
+        }
+        final double[] child = new double[Evaluator.FEATURES];
+        for (int i = 0; i < child.length; i++) {
+            child[i] = first * myPopulation[theFirst][i] + second * myPopulation[theSecond][i];
+        }
+        if (theRandom.nextDouble() < MUTATION_RATE) {
+            child[theRandom.nextInt(child.length)] +=
+                            theRandom.nextDouble(-MUTATION_STEP, MUTATION_STEP);
+        }
+        return normalize(child);
+    }
+
+    /**
+     * Scales a weight vector to unit length; the Evaluator ranks moves the
+     * same at any positive scale.
+     *
+     * @param theWeights the weights.
+     * @return the same array, scaled.
+     */
+    private static double[] normalize(final double[] theWeights) {
+        double length = 0;
+        for (final double w : theWeights) {
+            length += w * w;
+        }
+        length = Math.sqrt(length);
+        if (length > 0) {
+            for (int i = 0; i < theWeights.length; i++) {
+                theWeights[i] /= length;
+            }
+        }
+        return theWeights;
+    }
+
+    /**
+     * Formats weights for a checkpoint line.
+     *
+     * @param theWeights the weights.
+     * @return the weights, each preceded by a space.
+     */
+    private static String formatWeights(final double[] theWeights) {
+        final StringBuilder sb = new StringBuilder();
+        for (final double w : theWeights) {
+            sb.append(' ').append(w);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses the weights of a checkpoint line.
+     *
+     * @param theFields the fields of the line.
+     * @param theStart the index of the first weight.
+     * @return the weights.
+     * @throws IOException if the line has the wrong number of weights.
+     */
+    private static double[] parseWeights(final String[] theFields, final int theStart)
+        throws IOException {
+        if (theFields.length - theStart != Evaluator.FEATURES) {
+            throw new IOException("Expected " + Evaluator.FEATURES + " weights");
+        }
+        final double[] result = new double[Evaluator.FEATURES];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Double.parseDouble(theFields[theStart + i]);
+        }
+        return result;
+    }
+}
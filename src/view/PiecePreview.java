@@ -9,21 +9,24 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.util.Observable;
-import java.util.Observer;
+import java.awt.GraphicsConfiguration;
 
 import javax.swing.JPanel;
 
+import model.BoardState;
 import model.Point;
 import model.TetrisPiece;
 
 /**
  * A class that represents the preview of the next piece to fall in the Tetris game.
  * 
+ * The piece is scaled with the panel, which is PREVIEW_SQUARES squares
+ * across; like the board, its squares are sized in device pixels.
+ * 
  * @author Nina Chepovska
  * @version May 23, 2015
  */
-public final class PiecePreview extends JPanel implements Observer {
+public final class PiecePreview extends JPanel {
     
     /** The serial version id. */
     private static final long serialVersionUID = -2998591967701257920L;
@@ -34,8 +37,11 @@ public final class PiecePreview extends JPanel implements Observer {
     /** The color of this panel. */
     private static final Color BACKGROUND_COLOR = Color.WHITE;
     
-    /** The size of the Tetris piece squares. */
-    private static final int SQUARE_SIZE = 25;
+    /** The width and height of the panel in squares. */
+    private static final int PREVIEW_SQUARES = 6;
+    
+    /** The size of the squares the offsets are given for. */
+    private static final int DEFAULT_SQUARE_SIZE = 25;
     
     /** The x value used to offset the Tetris piece within the panel. */
     private static final int X_OFFSET = 40;
@@ -48,6 +54,9 @@ public final class PiecePreview extends JPanel implements Observer {
     
     /** The Game Over state. */
     private boolean myGameOver;
+    
+    /** The tiles the squares are painted with, or null until first painted. */
+    private TileCache myTiles;
 
     /**
      * Constructs a new piece preview panel.
@@ -62,47 +71,41 @@ public final class PiecePreview extends JPanel implements Observer {
     @Override
     public void paintComponent(final Graphics theGraphics) {
         super.paintComponent(theGraphics);
-        final Graphics2D g2d = (Graphics2D) theGraphics;
-        
-        if (myGameOver) {
-            setBackground(Color.GRAY);
-        } else {
-            setBackground(BACKGROUND_COLOR);
-        }
         
         if (myTetrisPiece != null) {
-            if (myGameOver) {
-                g2d.setColor(Color.DARK_GRAY);
-            } else {
-                g2d.setColor(myTetrisPiece.getColor());
+            final Graphics2D g2d = (Graphics2D) theGraphics.create();
+            final double scale = TileCache.toDevicePixels(g2d);
+            final int width = (int) (getWidth() * scale);
+            final int height = (int) (getHeight() * scale);
+            final int size = Math.max(1, Math.min(width, height) / PREVIEW_SQUARES);
+            final GraphicsConfiguration configuration = getGraphicsConfiguration();
+            if (myTiles == null || !myTiles.isFor(size, configuration)) {
+                myTiles = new TileCache(size, configuration);
             }
             
+            final int x = (width - size * PREVIEW_SQUARES) / 2
+                          + X_OFFSET * size / DEFAULT_SQUARE_SIZE;
+            final int y = (height - size * PREVIEW_SQUARES) / 2
+                          + Y_OFFSET * size / DEFAULT_SQUARE_SIZE;
             for (final Point point : myTetrisPiece.getPoints()) {
-                g2d.fillRect(point.x() * SQUARE_SIZE + X_OFFSET, 
-                             point.y() * -SQUARE_SIZE + Y_OFFSET,  SQUARE_SIZE, SQUARE_SIZE);
-            }
-            
-            theGraphics.setColor(Color.WHITE);
-            for (final Point point : myTetrisPiece.getPoints()) {
-                theGraphics.drawRect(point.x() * SQUARE_SIZE + X_OFFSET, 
-                                     point.y() * -SQUARE_SIZE + Y_OFFSET,  
-                                     SQUARE_SIZE, SQUARE_SIZE);
+                myTiles.paint(g2d, myTetrisPiece.getColor(), myGameOver,
+                              point.x() * size + x, point.y() * -size + y);
             }
+            g2d.dispose();
         }
     }
     
     /**
-     * Updates the PiecePreview when something has changed in the Observable class.
+     * Shows the next piece of a new state of the game. Must be called on the
+     * event dispatch thread.
      * 
-     * @param theObject the observable object.
-     * @param theData the data that has changed.
+     * @param theState the state of the game.
      */
-    public void update(final Observable theObject, final Object theData) {
-        if (theData instanceof TetrisPiece) {
-            myTetrisPiece = (TetrisPiece) theData;
+    public void setState(final BoardState theState) {
+        if (theState.getNextPiece() != myTetrisPiece) {
+            myTetrisPiece = theState.getNextPiece();
+            repaint();
         }
-        
-        repaint();
     }
     
     /**
@@ -112,6 +115,11 @@ public final class PiecePreview extends JPanel implements Observer {
      */
     protected void setGameOver(final boolean theState) {
         myGameOver = theState;
+        if (myGameOver) {
+            setBackground(Color.GRAY);
+        } else {
+            setBackground(BACKGROUND_COLOR);
+        }
         repaint();
     }
 }
@@ -6,15 +6,21 @@
 package view;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowEvent;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -27,17 +33,25 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
-import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 
-import model.Board;
+import model.BoardState;
+import model.GameAction;
+import model.GameCore;
+import model.GameLoop;
 
 /**
  * This class represents the graphical user interface of the Tetris program.
  * 
+ * The game runs on a GameLoop thread. Key presses and menu commands are
+ * queued on the loop as GameActions, and the states the loop publishes
+ * are handed to the event dispatch thread, which shows only the latest
+ * state whenever it gets to it.
+ * 
  * @author Nina Chepovska
  * @version May 21, 2015
  */
-public final class TetrisGUI implements Observer {
+public final class TetrisGUI {
     
     /** The icon of the frame. */
     private static final ImageIcon FRAME_ICON = new ImageIcon("images//tetris-bw.png");
@@ -48,11 +62,17 @@ public final class TetrisGUI implements Observer {
     /** The default size of this panel. */
     private static final Dimension DEFAULT_FRAME_SIZE = new Dimension(455, 550);
     
-    /** The delay of the timer in milliseconds. */
-    private static final int INITIAL_TIMER_DELAY = 1000; 
+    /** The width of the board. */
+    private static final int BOARD_WIDTH = 10;
+    
+    /** The height of the board. */
+    private static final int BOARD_HEIGHT = 20;
     
-    /** The decrement step of the timer when game levels up. */
-    private static final int TIMER_LEVEL_UP_DECREMENT = 150;
+    /** The delay between steps of gravity in milliseconds. */
+    private static final int INITIAL_GRAVITY_DELAY = 1000; 
+    
+    /** The decrement step of the gravity delay when game levels up. */
+    private static final int GRAVITY_LEVEL_UP_DECREMENT = 150;
     
     /** The size of the two east panels. */
     private static final Dimension EAST_PANELS_SIZE = new Dimension(200, 200);
@@ -78,14 +98,23 @@ public final class TetrisGUI implements Observer {
     /** The level up string used for the level up label. */
     private static final String LEVEL_UP_STRING = "Level Up in: ";
     
+    /** The preferred sizes of the info panel components at the default frame size. */
+    private final Map<Component, Dimension> myDefaultSizes;
+    
+    /** The height of the content pane at the default frame size. */
+    private int myDefaultHeight;
+    
     /** The frame of this GUI. */
     private final JFrame myFrame;
     
-    /** The timer used to animate and step through the game. */
-    private final Timer myTimer;
+    /** The loop that runs the game. */
+    private final GameLoop myLoop;
+    
+    /** The latest state published by the loop that has not been shown yet. */
+    private final AtomicReference<BoardState> myPendingState;
     
-    /** The board object that represents the Tetris game. */
-    private final Board myBoard;
+    /** The state of the game being shown, or null until the first state. */
+    private BoardState myState;
     
     /** A panel which is a visual representation of the board object. */
     private VisualBoard myVisualBoard;
@@ -128,8 +157,9 @@ public final class TetrisGUI implements Observer {
      */
     public TetrisGUI() {
         myFrame = new JFrame("Tetris");
-        myBoard = new Board();
-        myTimer = new Timer(INITIAL_TIMER_DELAY, new TimerActionListener());
+        myPendingState = new AtomicReference<BoardState>();
+        myLoop = new GameLoop(new GameCore(BOARD_WIDTH, BOARD_HEIGHT), new StatePublisher());
+        myDefaultSizes = new HashMap<Component, Dimension>();
         
         myFrame.addKeyListener(new GameKeyListener());
     }
@@ -145,43 +175,47 @@ public final class TetrisGUI implements Observer {
         
         myFrame.setPreferredSize(DEFAULT_FRAME_SIZE);
         myFrame.pack();
-        myFrame.setMinimumSize(myFrame.getSize());
-        myFrame.setResizable(false);
+        myDefaultHeight = myFrame.getContentPane().getHeight();
+        myFrame.getContentPane().addComponentListener(new ResizeListener());
+        myFrame.setResizable(true);
         
         myFrame.setLocationRelativeTo(null);
         
         myFrame.setVisible(true);
-                
-        myBoard.addObserver(this);
-        myBoard.addObserver(myVisualBoard);
-        myBoard.addObserver(myPiecePreview);
+        
+        myLoop.start();
     }
     
     /**
-     * Updates the GUI when something has changed in the Observable class.
+     * Updates the GUI with a new state of the game.
      * 
-     * @param theObject the observable object.
-     * @param theData the data that has changed.
+     * @param theState the state of the game.
      */
-    public void update(final Observable theObject, final Object theData) {
-        if (theData instanceof Boolean) {
+    private void showState(final BoardState theState) {
+        final BoardState previous = myState;
+        myState = theState;
+        myVisualBoard.setState(theState);
+        myPiecePreview.setState(theState);
+        
+        if (previous != null && theState.isGameOver() && !previous.isGameOver()) {
             myGameOver = true;
             myVisualBoard.setGameOver(myGameOver);
             myPiecePreview.setGameOver(myGameOver);
-        } else if (theData instanceof Integer[]) {
-            final Integer[] linesCleared = (Integer[]) theData;
+        }
+        
+        if (previous != null && theState.getLinesCleared() != previous.getLinesCleared()) {
+            myTotalLinesCleared = theState.getLinesCleared();
+            myLinesLabel.setText(TOTAL_LINES_STRING + myTotalLinesCleared);
             
-            myScore += linesCleared.length * POINTS_PER_LINE;
+            myScore = myTotalLinesCleared * POINTS_PER_LINE;
             myScoreLabel.setText(SCORE_STRING + myScore);
-                        
-            myTotalLinesCleared += linesCleared.length;
-            myLinesLabel.setText(TOTAL_LINES_STRING + myTotalLinesCleared);
             
             myLevel = (myTotalLinesCleared / POINTS_PER_LINE) + 1;
             myLevelLabel.setText(LEVEL_STRING + myLevel);
             
-            myTimer.setDelay(INITIAL_TIMER_DELAY - (myLevel * TIMER_LEVEL_UP_DECREMENT) 
-                             + TIMER_LEVEL_UP_DECREMENT);
+            myLoop.setGravityDelay(INITIAL_GRAVITY_DELAY 
+                                   - (myLevel * GRAVITY_LEVEL_UP_DECREMENT) 
+                                   + GRAVITY_LEVEL_UP_DECREMENT, TimeUnit.MILLISECONDS);
             
             myLevelUp = (POINTS_PER_LINE * myLevel) - myTotalLinesCleared;
             myLevelUpLabel.setText(LEVEL_UP_STRING + myLevelUp);
@@ -243,12 +277,13 @@ public final class TetrisGUI implements Observer {
                 myLinesLabel.setText(TOTAL_LINES_STRING + 0);
                 myLevelUpLabel.setText(LEVEL_UP_STRING + POINTS_PER_LINE);
                 
-                myTimer.setDelay(INITIAL_TIMER_DELAY);
+                myLoop.setGravityDelay(INITIAL_GRAVITY_DELAY, TimeUnit.MILLISECONDS);
                 myGameOver = false;
                 myVisualBoard.setGameOver(myGameOver);
                 myPiecePreview.setGameOver(myGameOver);
-                myBoard.newGame();
-                myTimer.start();
+                myLoop.perform(GameAction.NEW_GAME);
+                myPaused = false;
+                myLoop.setPaused(myPaused);
             }
         });        
         
@@ -266,7 +301,7 @@ public final class TetrisGUI implements Observer {
                 myGameOver = true;
                 myVisualBoard.setGameOver(myGameOver);
                 myPiecePreview.setGameOver(myGameOver);
-                myTimer.stop();
+                myLoop.setPaused(true);
             }
         });        
         
@@ -345,6 +380,8 @@ public final class TetrisGUI implements Observer {
         myPiecePreview = new PiecePreview();
         nextPiecePanel.add(myPiecePreview);
         nextPiecePanel.setPreferredSize(EAST_PANELS_SIZE);
+        myDefaultSizes.put(myPiecePreview, myPiecePreview.getPreferredSize());
+        myDefaultSizes.put(nextPiecePanel, EAST_PANELS_SIZE);
         
         final JPanel scoringPanel = new JPanel();
         scoringPanel.setLayout(new GridLayout(NUMBER_SCORING_LABELS, 1));
@@ -357,10 +394,14 @@ public final class TetrisGUI implements Observer {
         scoringPanel.add(myLinesLabel);
         scoringPanel.add(myLevelUpLabel);
         scoringPanel.setPreferredSize(EAST_PANELS_SIZE);
+        myDefaultSizes.put(scoringPanel, EAST_PANELS_SIZE);
+        
+        final Component padding = Box.createVerticalStrut(EAST_PANEL_PADDING);
+        myDefaultSizes.put(padding, padding.getPreferredSize());
         
         final Box infoBox = new Box(BoxLayout.PAGE_AXIS);
         infoBox.add(nextPiecePanel);
-        infoBox.add(Box.createVerticalStrut(EAST_PANEL_PADDING));
+        infoBox.add(padding);
         infoBox.add(scoringPanel);
         
         infoPanel.add(infoBox);
@@ -412,22 +453,22 @@ public final class TetrisGUI implements Observer {
                 if (!myPaused) {                    
                     switch (key) {
                         case KeyEvent.VK_RIGHT:
-                            myBoard.right();
+                            myLoop.perform(GameAction.RIGHT);
                             break;
                         case KeyEvent.VK_LEFT:
-                            myBoard.left();
+                            myLoop.perform(GameAction.LEFT);
                             break;
                         case KeyEvent.VK_DOWN:
-                            myBoard.down();
+                            myLoop.perform(GameAction.DOWN);
                             break;
                         case KeyEvent.VK_SPACE: 
-                            myBoard.drop();
+                            myLoop.perform(GameAction.DROP);
                             break;
                         case KeyEvent.VK_Z:
-                            myBoard.rotateCW();
+                            myLoop.perform(GameAction.ROTATE_CW);
                             break;
                         case KeyEvent.VK_X:
-                            myBoard.rotateCCW();
+                            myLoop.perform(GameAction.ROTATE_CCW);
                             break;
                         default: 
                             // do nothing
@@ -444,28 +485,57 @@ public final class TetrisGUI implements Observer {
          * Pauses or resumes the game. 
          */
         private void setPaused() {
-            if (myTimer.isRunning()) {
-                myTimer.stop();
-                myPaused = true;
-            } else {
-                myTimer.start();
-                myPaused = false;
+            myPaused = !myLoop.isPaused();
+            myLoop.setPaused(myPaused);
+        }
+    }
+    
+    /**
+     * A component listener class that scales the info panel with the height of the frame,
+     * so the next piece preview grows and shrinks with the board.
+     * 
+     * @author Nina Chepovska
+     * @version May 21, 2015
+     */
+    private class ResizeListener extends ComponentAdapter {
+        @Override
+        public void componentResized(final ComponentEvent theEvent) {
+            final Component content = theEvent.getComponent();
+            final double scale = (double) content.getHeight() / myDefaultHeight;
+            
+            for (final Map.Entry<Component, Dimension> entry : myDefaultSizes.entrySet()) {
+                final Dimension size = new Dimension((int) (entry.getValue().width * scale),
+                                                     (int) (entry.getValue().height * scale));
+                if (entry.getKey() instanceof Box.Filler) {
+                    ((Box.Filler) entry.getKey()).changeShape(size, size, 
+                        new Dimension(Short.MAX_VALUE, size.height));
+                } else {
+                    entry.getKey().setPreferredSize(size);
+                }
             }
+            content.revalidate();
         }
     }
     
     /**
-     * An action listener class that handles events created by the timer.
+     * Receives the states published by the game loop and shows the latest one on the
+     * event dispatch thread. A state published before the last one was shown replaces it,
+     * so a slow event dispatch thread skips states rather than falling behind.
      * 
      * @author Nina Chepovska
      * @version May 21, 2015
      */
-    private class TimerActionListener implements ActionListener {
+    private class StatePublisher implements Consumer<BoardState>, Runnable {
         @Override
-        public void actionPerformed(final ActionEvent theEvent) {
-            if (!myGameOver) {
-                myBoard.step();
+        public void accept(final BoardState theState) {
+            if (myPendingState.getAndSet(theState) == null) {
+                SwingUtilities.invokeLater(this);
             }
         }
+        
+        @Override
+        public void run() {
+            showState(myPendingState.getAndSet(null));
+        }
     }
 }
@@ -0,0 +1,153 @@
+/*
+ * TCSS 305
+ * Assignment 6 - Tetris
+ */
+
+package view;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import model.TetrisPiece;
+
+/**
+ * Pre-rendered images of the squares the game panels paint, one per piece
+ * color plus one for the game over state, so painting a square is a single
+ * image copy rather than a fill and an outline.
+ *
+ * A tile is the square filled with its color and outlined in white, one
+ * pixel wider and taller than the square size because the outline covers
+ * the first pixel of the next square, exactly as drawRect() does. Tiles
+ * are opaque and, when a graphics configuration is known, compatible with
+ * the screen so they can be accelerated. A cache is built for one square
+ * size; colors outside the piece palette get a tile when first used.
+ *
+ * The panels size their squares in device pixels and draw the tiles with
+ * the scale removed from the graphics transform, so that on a scaled
+ * (HiDPI) display the tiles are copied pixel for pixel rather than scaled
+ * on every frame.
+ *
+ * @author Nina Chepovska
+ * @version May 23, 2015
+ */
+final class TileCache {
+
+    /** The color of the outline of a square. */
+    private static final Color OUTLINE_COLOR = Color.WHITE;
+
+    /** The color of a square when the game is over. */
+    private static final Color GAME_OVER_COLOR = Color.DARK_GRAY;
+
+    /** The size of a square, not counting the outline past its edge. */
+    private final int mySize;
+
+    /** The configuration the tiles are compatible with, or null. */
+    private final GraphicsConfiguration myConfiguration;
+
+    /** The tiles by square color. */
+    private final Map<Color, Image> myTiles;
+
+    /** The tile of a square when the game is over. */
+    private final Image myGameOverTile;
+
+    /**
+     * Renders the tiles of every piece color for a square size.
+     *
+     * @param theSize is the size of a square.
+     * @param theConfiguration is the configuration the tiles will be drawn
+     *        to, or null if it is not known.
+     */
+    TileCache(final int theSize, final GraphicsConfiguration theConfiguration) {
+        mySize = theSize;
+        myConfiguration = theConfiguration;
+        myTiles = new HashMap<Color, Image>();
+        for (final TetrisPiece piece : TetrisPiece.values()) {
+            myTiles.put(piece.getColor(), render(piece.getColor()));
+        }
+        myGameOverTile = render(GAME_OVER_COLOR);
+    }
+
+    /**
+     * Removes the scale from the transform of a graphics object, so that it
+     * draws in device pixels with its origin unchanged. The display scale
+     * is taken to be the same along both axes.
+     *
+     * @param theGraphics is the graphics object to change.
+     * @return the scale that was removed, the number of device pixels per
+     *         unit of the component's coordinates.
+     */
+    static double toDevicePixels(final Graphics2D theGraphics) {
+        final AffineTransform transform = theGraphics.getTransform();
+        final double result = transform.getScaleX();
+        if (transform.getType() != AffineTransform.TYPE_IDENTITY
+            && transform.getType() != AffineTransform.TYPE_TRANSLATION) {
+            theGraphics.setTransform(AffineTransform.getTranslateInstance(
+                transform.getTranslateX(), transform.getTranslateY()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether this cache was built for a square size and
+     * graphics configuration.
+     *
+     * @param theSize is the size of a square.
+     * @param theConfiguration is the graphics configuration, or null.
+     * @return true if the tiles can be used as they are.
+     */
+    boolean isFor(final int theSize, final GraphicsConfiguration theConfiguration) {
+        return mySize == theSize && myConfiguration == theConfiguration;
+    }
+
+    /**
+     * Paints a square.
+     *
+     * @param theGraphics is the graphics object to draw with.
+     * @param theColor is the color of the square.
+     * @param theGameOver is the Game Over state; every square is gray when
+     *        it is true.
+     * @param theX is the x coordinate of the top left corner of the square.
+     * @param theY is the y coordinate of the top left corner of the square.
+     */
+    void paint(final Graphics theGraphics, final Color theColor, final boolean theGameOver,
+               final int theX, final int theY) {
+        Image tile = myGameOverTile;
+        if (!theGameOver) {
+            tile = myTiles.get(theColor);
+            if (tile == null) {
+                tile = render(theColor);
+                myTiles.put(theColor, tile);
+            }
+        }
+        theGraphics.drawImage(tile, theX, theY, null);
+    }
+
+    /**
+     * Renders the tile of one color.
+     *
+     * @param theColor is the color of the square.
+     * @return the tile.
+     */
+    private Image render(final Color theColor) {
+        final BufferedImage tile;
+        if (myConfiguration == null) {
+            tile = new BufferedImage(mySize + 1, mySize + 1, BufferedImage.TYPE_INT_RGB);
+        } else {
+            tile = myConfiguration.createCompatibleImage(mySize + 1, mySize + 1);
+        }
+        final Graphics graphics = tile.createGraphics();
+        graphics.setColor(theColor);
+        graphics.fillRect(0, 0, mySize, mySize);
+        graphics.setColor(OUTLINE_COLOR);
+        graphics.drawRect(0, 0, mySize, mySize);
+        graphics.dispose();
+        return tile;
+    }
+}
@@ -9,19 +9,38 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.util.List;
-import java.util.Observable;
-import java.util.Observer;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
 
 import javax.swing.JPanel;
 
+import model.BoardState;
+import model.Point;
+
 /**
  * A class that is the visual representation of the Tetris game board.
  * 
+ * The panel paints the latest BoardState published by the game loop. The
+ * frozen blocks are kept painted in an image; a new state is compared
+ * with the last one row by row, and only the rows that changed are marked
+ * dirty and painted again. The active piece is drawn over the image.
+ * Repaints are requested for just the cells of the active piece and the
+ * dirty rows, so the cost of a frame follows what changed rather than the
+ * size of the board, however many ticks passed between two states.
+ * Squares are copied from pre-rendered tiles rather than filled and
+ * outlined.
+ * 
+ * The board is scaled to the largest squares that fit the panel and
+ * centered in it. Sizes are worked out in device pixels, so on a scaled
+ * display the tiles and the frozen image are rendered at the resolution of
+ * the screen; they are only rendered again when the square size changes.
+ * 
  * @author Nina Chepovska
  * @version May 21, 2015
  */
-public final class VisualBoard extends JPanel implements Observer {
+public final class VisualBoard extends JPanel {
     
     /** The serial version id. */
     private static final long serialVersionUID = 5366333624441599821L;
@@ -29,17 +48,15 @@ public final class VisualBoard extends JPanel implements Observer {
     /** The default color of this panel. */
     private static final Color DEFUALT_PANEL_COLOR = Color.WHITE;
     
-    /** The size of the Tetris piece squares. */
-    private static final int SQUARE_SIZE = 25;
+    /** The size of the squares the Game Over font size is given for. */
+    private static final int DEFAULT_SQUARE_SIZE = 25;
     
-    /** Value used to align rows on the board. */
-    private static final int ROW_ALIGNMENT = 475;
-    
-    /** Game Over string font size. */
+    /** Game Over string font size, for squares of the default size. */
     private static final int GAME_OVER_FONT_SIZE = 46;
     
-    /** Value used to align the Game Over string on the board. */
-    private static final int GAME_OVER_ALIGNMENT = 250;
+    /** The Game Over string font, for squares of the default size. */
+    private static final Font GAME_OVER_FONT = new Font("SansSerif", Font.BOLD,
+                                                        GAME_OVER_FONT_SIZE);
     
     /** The Game Over state. */
     private boolean myGameOver;
@@ -47,8 +64,35 @@ public final class VisualBoard extends JPanel implements Observer {
     /** The state of the grid, visible or not. */
     private boolean myGrid;
     
-    /** A list of all 20 rows of the board. */
-    private List<Color[]> myRows;
+    /** The state of the game being shown, or null until the first state. */
+    private BoardState myState;
+    
+    /**
+     * The background and frozen blocks as painted on the panel, or null
+     * until first painted.
+     */
+    private BufferedImage myFrozenImage;
+    
+    /** The rows of the frozen image that no longer match the frozen blocks. */
+    private final BitSet myDirtyRows;
+    
+    /** The tiles the squares are painted with, or null until first painted. */
+    private TileCache myTiles;
+    
+    /** The device pixels per unit of panel coordinates when last painted. */
+    private double myScale;
+    
+    /** The size of the squares in device pixels. */
+    private int mySquareSize;
+    
+    /** The x coordinate in device pixels of the left edge of the board. */
+    private int myOriginX;
+    
+    /** The y coordinate in device pixels of the top edge of the board. */
+    private int myOriginY;
+    
+    /** The Game Over string font for the size of the squares. */
+    private Font myGameOverFont;
 
     /**
      * Constructs a new VisualBoard and initializes class fields. 
@@ -56,15 +100,22 @@ public final class VisualBoard extends JPanel implements Observer {
     public VisualBoard() {
         super();
         
+        myDirtyRows = new BitSet();
+        myScale = 1;
+        mySquareSize = DEFAULT_SQUARE_SIZE;
+        myGameOverFont = GAME_OVER_FONT;
         setBackground(DEFUALT_PANEL_COLOR);
     }
     
     @Override
     public void paintComponent(final Graphics theGraphics) {
         super.paintComponent(theGraphics);
-        final Graphics2D g2d = (Graphics2D) theGraphics;
         
-        if (myRows != null) {
+        if (myState != null) {
+            final Graphics2D g2d = (Graphics2D) theGraphics.create();
+            layOut(TileCache.toDevicePixels(g2d));
+            g2d.translate(myOriginX, myOriginY);
+            
             paintRows(g2d);
             
             if (myGrid) {
@@ -72,28 +123,48 @@ public final class VisualBoard extends JPanel implements Observer {
             }
                         
             if (myGameOver) {
-                setBackground(Color.GRAY);
-                
                 g2d.setColor(Color.WHITE);
-                g2d.setFont(new Font("SansSerif", Font.BOLD, GAME_OVER_FONT_SIZE));
-                g2d.drawString("Game Over", 0, GAME_OVER_ALIGNMENT);
+                g2d.setFont(myGameOverFont);
+                g2d.drawString("Game Over", 0, myState.getHeight() * mySquareSize / 2);
             }
+            g2d.dispose();
         }
     }    
     
     /**
-     * Updates the VisualBoard when something has changed in the Observable class.
+     * Shows a new state of the game, repainting the parts of the board that
+     * changed since the last state. Must be called on the event dispatch
+     * thread.
      * 
-     * @param theObject the observable object.
-     * @param theData the data that has changed.
+     * @param theState the state of the game.
      */
-    public void update(final Observable theObject, final Object theData) {
-        if (theData instanceof List<?>) {
-            myRows = (List<Color[]>) theData;
+    public void setState(final BoardState theState) {
+        final BoardState old = myState;
+        myState = theState;
+        if (old == null || old.getWidth() != theState.getWidth()
+            || old.getHeight() != theState.getHeight()) {
+            myDirtyRows.set(0, theState.getHeight());
+            repaint();
+        } else {
+            int first = -1;
+            int last = -1;
+            for (int y = 0; y < theState.getHeight(); y++) {
+                if (!theState.isRowEqual(old, y)) {
+                    if (first < 0) {
+                        first = y;
+                    }
+                    last = y;
+                }
+            }
+            if (first >= 0) {
+                invalidateRows(first, last);
+            }
+            if (!theState.isPieceEqual(old)) {
+                repaintCells(old.getPiecePoints());
+                repaintCells(theState.getPiecePoints());
+            }
         }
-        
-        repaint();
-    }  
+    }
     
     /**
      * Sets the state of the grid, visible or not. 
@@ -112,54 +183,220 @@ public final class VisualBoard extends JPanel implements Observer {
      */
     protected void setGameOver(final boolean theState) {
         myGameOver = theState;
+        if (myGameOver) {
+            setBackground(Color.GRAY);
+        } else {
+            setBackground(DEFUALT_PANEL_COLOR);
+        }
+        if (myState != null) {
+            myDirtyRows.set(0, myState.getHeight());
+        }
         repaint();
     }
     
+    /**
+     * Sizes the squares to fit the board in the panel and centers it.
+     * 
+     * @param theScale the device pixels per unit of panel coordinates.
+     */
+    private void layOut(final double theScale) {
+        final int width = (int) (getWidth() * theScale);
+        final int height = (int) (getHeight() * theScale);
+        final int size = Math.max(1, Math.min(width / myState.getWidth(),
+                                              height / myState.getHeight()));
+        if (size != mySquareSize) {
+            mySquareSize = size;
+            myGameOverFont = GAME_OVER_FONT.deriveFont(GAME_OVER_FONT_SIZE * (float) size
+                                                       / DEFAULT_SQUARE_SIZE);
+        }
+        myScale = theScale;
+        myOriginX = (width - myState.getWidth() * size) / 2;
+        myOriginY = (height - myState.getHeight() * size) / 2;
+    }
+    
+    /**
+     * Marks a range of rows of the frozen image as dirty and repaints them.
+     * A square's outline reaches one pixel into the row below it, so that
+     * row is marked as well.
+     * 
+     * @param theFirst the lowest row.
+     * @param theLast the highest row.
+     */
+    private void invalidateRows(final int theFirst, final int theLast) {
+        final int first = Math.max(0, theFirst - 1);
+        myDirtyRows.set(first, theLast + 1);
+        repaintBoard(0, rowTop(theLast), myState.getWidth() * mySquareSize + 1,
+                     mySquareSize * (theLast - first + 1) + 1);
+    }
+    
+    /**
+     * Repaints the squares under some board points.
+     * 
+     * @param thePoints the board points.
+     */
+    private void repaintCells(final Point[] thePoints) {
+        if (thePoints.length > 0) {
+            int minX = thePoints[0].x();
+            int maxX = minX;
+            int minY = thePoints[0].y();
+            int maxY = minY;
+            for (final Point point : thePoints) {
+                minX = Math.min(minX, point.x());
+                maxX = Math.max(maxX, point.x());
+                minY = Math.min(minY, point.y());
+                maxY = Math.max(maxY, point.y());
+            }
+            repaintBoard(minX * mySquareSize, rowTop(maxY),
+                         mySquareSize * (maxX - minX + 1) + 1,
+                         mySquareSize * (maxY - minY + 1) + 1);
+        }
+    }
+    
+    /**
+     * Repaints the part of the panel covering an area of the board.
+     * 
+     * @param theX the x coordinate of the area in device pixels from the
+     *        left edge of the board.
+     * @param theY the y coordinate of the area in device pixels from the
+     *        top edge of the board.
+     * @param theWidth the width of the area in device pixels.
+     * @param theHeight the height of the area in device pixels.
+     */
+    private void repaintBoard(final int theX, final int theY,
+                              final int theWidth, final int theHeight) {
+        final int left = (int) Math.floor((myOriginX + theX) / myScale);
+        final int top = (int) Math.floor((myOriginY + theY) / myScale);
+        final int right = (int) Math.ceil((myOriginX + theX + theWidth) / myScale);
+        final int bottom = (int) Math.ceil((myOriginY + theY + theHeight) / myScale);
+        repaint(left, top, right - left, bottom - top);
+    }
+    
+    /**
+     * Returns the y coordinate of the top edge of a row.
+     * 
+     * @param theRow the board row.
+     * @return the y coordinate in device pixels from the top edge of the board.
+     */
+    private int rowTop(final int theRow) {
+        return (myState.getHeight() - 1 - theRow) * mySquareSize;
+    }
+    
     /**
      * Paints the rows of the board on the panel.
      * 
-     * @param theGraphics is the graphics object to draw with.
+     * @param theGraphics is the graphics object to draw with, in device
+     *        pixels from the top left corner of the board.
      */
     private void paintRows(final Graphics theGraphics) {
-        setBackground(DEFUALT_PANEL_COLOR);
+        final GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (myTiles == null || !myTiles.isFor(mySquareSize, configuration)) {
+            myTiles = new TileCache(mySquareSize, configuration);
+            myFrozenImage = null;
+        }
+        updateFrozenImage(configuration);
+        theGraphics.drawImage(myFrozenImage, 0, 0, null);
         
-        for (int r = myRows.size() - 1; r >= 0; r--) {
-            final Color[] row = myRows.get(r);
-            for (int i = 0; i < row.length; i++) {
-                if (row[i] != null) {
-                    if (myGameOver) {
-                        theGraphics.setColor(Color.DARK_GRAY);
-                    } else {
-                        theGraphics.setColor(row[i]);
-                    }
-                    
-                    theGraphics.fillRect(i * SQUARE_SIZE, ROW_ALIGNMENT - SQUARE_SIZE * r, 
-                                 SQUARE_SIZE, SQUARE_SIZE);
-                    
-                    theGraphics.setColor(Color.WHITE);
-                    theGraphics.drawRect(i * SQUARE_SIZE, ROW_ALIGNMENT - SQUARE_SIZE * r, 
-                                 SQUARE_SIZE, SQUARE_SIZE);
+        if (myState.getPiece() != null) {
+            final Color color = myState.getPiece().getColor();
+            for (final Point point : myState.getPiecePoints()) {
+                paintSquare(theGraphics, color, point.x(), point.y());
+            }
+        }
+    }
+    
+    /**
+     * Paints the dirty rows of the frozen image again, creating the image
+     * first if the board has no image of its size yet.
+     * 
+     * @param theConfiguration is the configuration of the panel, or null.
+     */
+    private void updateFrozenImage(final GraphicsConfiguration theConfiguration) {
+        final int width = myState.getWidth() * mySquareSize + 1;
+        final int height = myState.getHeight() * mySquareSize + 1;
+        if (myFrozenImage == null || myFrozenImage.getWidth() != width
+            || myFrozenImage.getHeight() != height) {
+            if (theConfiguration == null) {
+                myFrozenImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            } else {
+                myFrozenImage = theConfiguration.createCompatibleImage(width, height);
+            }
+            myDirtyRows.set(0, myState.getHeight());
+        }
+        if (!myDirtyRows.isEmpty()) {
+            final Graphics2D g2d = myFrozenImage.createGraphics();
+            for (int r = myDirtyRows.nextSetBit(0); r >= 0 && r < myState.getHeight();
+                 r = myDirtyRows.nextSetBit(r + 1)) {
+                final Rectangle band = new Rectangle(0, rowTop(r), width, mySquareSize);
+                if (r == 0) {
+                    band.height++;
                 }
+                g2d.setClip(band);
+                g2d.setColor(getBackground());
+                g2d.fillRect(band.x, band.y, band.width, band.height);
+                if (r + 1 < myState.getHeight()) {
+                    paintFrozenRow(g2d, r + 1);
+                }
+                paintFrozenRow(g2d, r);
             }
+            g2d.dispose();
+            myDirtyRows.clear();
         }
     }
     
     /**
-     * Paints the grid on the panel.
+     * Paints the frozen squares of one row.
+     * 
+     * @param theGraphics is the graphics object to draw with.
+     * @param theRow is the board row.
+     */
+    private void paintFrozenRow(final Graphics theGraphics, final int theRow) {
+        final long mask = myState.getRowMask(theRow);
+        for (int i = 0; i < myState.getWidth(); i++) {
+            if ((mask >>> i & 1L) != 0L) {
+                paintSquare(theGraphics, myState.getFrozenColor(i, theRow), i, theRow);
+            }
+        }
+    }
+    
+    /**
+     * Paints one square of the board on the panel.
      * 
      * @param theGraphics is the graphics object to draw with.
+     * @param theColor is the color of the square.
+     * @param theColumn is the board column of the square.
+     * @param theRow is the board row of the square.
+     */
+    private void paintSquare(final Graphics theGraphics, final Color theColor,
+                             final int theColumn, final int theRow) {
+        myTiles.paint(theGraphics, theColor, myGameOver, theColumn * mySquareSize,
+                      rowTop(theRow));
+    }
+    
+    /**
+     * Paints the grid on the panel.
+     * 
+     * @param theGraphics is the graphics object to draw with, in device
+     *        pixels from the top left corner of the board.
      */
     private void paintGrid(final Graphics theGraphics) {
-        final int width = getWidth();
-        final int height = getHeight();
+        final int width = myState.getWidth() * mySquareSize;
+        final int height = myState.getHeight() * mySquareSize;
+        Rectangle clip = theGraphics.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, width, height);
+        }
         
         theGraphics.setColor(Color.GRAY);
         
-        for (int i = 0; i < width; i += SQUARE_SIZE) {
+        final int right = Math.min(width, clip.x + clip.width);
+        for (int i = Math.max(0, clip.x) / mySquareSize * mySquareSize; i <= right;
+             i += mySquareSize) {
             theGraphics.drawLine(i, 0, i, height);
         }
         
-        for (int i = 0; i < height; i += SQUARE_SIZE) {
+        final int bottom = Math.min(height, clip.y + clip.height);
+        for (int i = Math.max(0, clip.y) / mySquareSize * mySquareSize; i <= bottom;
+             i += mySquareSize) {
             theGraphics.drawLine(0, i, width, i);
         }
     }